@@ -0,0 +1,339 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The count, sum, sum of squares, lowest and highest value of every region, zone, pollutant
+ * and year, worked out once so that the statistics panel, the comparison and the trend graph
+ * look their answers up instead of going through the datasets.
+ *
+ * For region r, zone z (see Statistics.ZONES, with Statistics.ALL_ZONES for the whole
+ * region), pollutant p and year y the totals are stored at
+ *
+ *     ((r * zones + z) * pollutants + p) * years + y
+ *
+ * Regions are told apart by their boundaries. A cube can be written to a file next to the
+ * data together with a fingerprint of the data it was built from, and is only read back
+ * while the fingerprint is the same:
+ *
+ *     magic, format version, fingerprint
+ *     regions, years and pollutants
+ *     units and whether there is data for each pollutant and year
+ *     count, sum, sum of squares, lowest value and the highest point of each entry
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class AggregateCube
+{
+    private static final int MAGIC = 0x50564143; // "PVAC"
+    private static final int VERSION = 1;
+    private static final int ZONES = Statistics.ZONES.size() + 1;
+    // datasets held by a build at the same time, so it does not push the rest out of the cache
+    private static final int SETS_IN_FLIGHT = 4;
+
+    /**
+     * The totals of one region, zone, pollutant and year
+     */
+    public record Aggregate(int count, double sum, double sumOfSquares, double lowest, DataPoint highest, String units)
+    {
+        /**
+         * Returns the average of the values, or 0 if there were none
+         */
+        public double average()
+        {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * Returns the population variance of the values, or 0 if there were none
+         */
+        public double variance()
+        {
+            if (count == 0){
+                return 0;
+            }
+            double mean = sum / count;
+            return Math.max(0, sumOfSquares / count - mean * mean);
+        }
+
+        /**
+         * Returns the highest value, or 0 if there were none
+         */
+        public double max()
+        {
+            return highest == null ? 0 : highest.value();
+        }
+    }
+
+    private final List<String> regions;
+    private final List<String> years;
+    private final List<String> pollutants;
+    // by pollutant and year
+    private final boolean[] present;
+    private final String[] units;
+    // by region, zone, pollutant and year
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] squares;
+    private final double[] lowest;
+    private final DataPoint[] highest;
+
+    /**
+     * Constructor for an empty cube
+     */
+    private AggregateCube(List<String> regions, List<String> years, List<String> pollutants)
+    {
+        this.regions = List.copyOf(regions);
+        this.years = List.copyOf(years);
+        this.pollutants = List.copyOf(pollutants);
+        int sets = years.size() * pollutants.size();
+        int entries = regions.size() * ZONES * sets;
+        this.present = new boolean[sets];
+        this.units = new String[sets];
+        this.counts = new int[entries];
+        this.sums = new double[entries];
+        this.squares = new double[entries];
+        this.lowest = new double[entries];
+        this.highest = new DataPoint[entries];
+    }
+
+    /**
+     * Builds the cube of every year and type of a snapshot for some regions. Each dataset is
+     * acquired, aggregated for all the regions and released before the next one is located.
+     * The datasets are shared out between a few tasks which run at the same time, so at most
+     * SETS_IN_FLIGHT of them are held at once.
+     * @param RepositorySnapshot snapshot the datasets
+     * @param List<Region> regionList the regions
+     * @param Executor executor runs the tasks
+     * @return AggregateCube the cube
+     */
+    public static AggregateCube build(RepositorySnapshot snapshot, List<Region> regionList, Executor executor)
+    {
+        List<Statistics> stats = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (Region region : regionList){
+            Statistics regionStats = new Statistics(region);
+            stats.add(regionStats);
+            keys.add(regionStats.getRegionKey());
+        }
+        AggregateCube cube = new AggregateCube(keys, snapshot.getYears(), snapshot.getTypes());
+
+        int sets = cube.present.length;
+        int lanes = Math.min(SETS_IN_FLIGHT, sets);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++){
+            int first = lane;
+            tasks.add(CompletableFuture.runAsync(() -> {
+                // every lanes-th pollutant and year, one after another
+                for (int set = first; set < sets; set += lanes){
+                    cube.fill(set / cube.years.size(), set % cube.years.size(), snapshot, stats);
+                }
+            }, executor));
+        }
+        // each pollutant and year is filled by one task, so they never write the same entry
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        return cube;
+    }
+
+    /**
+     * Fills the entries of one pollutant and year from its dataset, which is held while it is read
+     */
+    private void fill(int pollutant, int year, RepositorySnapshot snapshot, List<Statistics> stats)
+    {
+        DataSet dataSet = snapshot.acquireSet(years.get(year), pollutants.get(pollutant));
+        if (dataSet == null){
+            return;
+        }
+        try {
+            fill(pollutant, year, dataSet, stats);
+        }
+        finally {
+            dataSet.release();
+        }
+    }
+
+    /**
+     * Fills the entries of one pollutant and year from its dataset
+     */
+    private void fill(int pollutant, int year, DataSet dataSet, List<Statistics> stats)
+    {
+        int set = pollutant * years.size() + year;
+        present[set] = true;
+        units[set] = dataSet.getUnits();
+        for (int r = 0; r < stats.size(); r++){
+            ZoneAssignment assignment = dataSet.getGeometry().getZoneAssignment(stats.get(r));
+            ZoneTotals totals = ZoneTotals.aggregate(dataSet, assignment);
+            for (int zone = 0; zone < ZONES; zone++){
+                int entry = entry(r, zone, set);
+                counts[entry] = totals.getCount(zone);
+                sums[entry] = totals.getSum(zone);
+                squares[entry] = totals.getSumOfSquares(zone);
+                lowest[entry] = totals.getLowest(zone);
+                highest[entry] = totals.getHighest(zone);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the cube holds the totals of a region
+     * @param Region region the region
+     * @return boolean true or false
+     */
+    public boolean covers(Region region)
+    {
+        return regions.contains(new Statistics(region).getRegionKey());
+    }
+
+    /**
+     * Returns the totals of a region, zone, year and pollutant
+     * @param Region region the region
+     * @param String zone the name of the zone, or "All Zones" for the whole region
+     * @param String year the year
+     * @param String pollutant the pollutant, in any case
+     * @return Aggregate the totals, or null if the cube does not cover them or there is no data for the year
+     */
+    public Aggregate get(Region region, String zone, String year, String pollutant)
+    {
+        int r = regions.indexOf(new Statistics(region).getRegionKey());
+        int z = Statistics.zoneId(zone);
+        int p = pollutants.indexOf(pollutant.toLowerCase().trim());
+        int y = years.indexOf(year);
+        if (r < 0 || z < 0 || p < 0 || y < 0){
+            return null;
+        }
+        int set = p * years.size() + y;
+        if (!present[set]){
+            return null;
+        }
+        int entry = entry(r, z, set);
+        return new Aggregate(counts[entry], sums[entry], squares[entry], lowest[entry], highest[entry], units[set]);
+    }
+
+    /**
+     * Returns the position of the totals of a region, zone and pollutant/year
+     */
+    private int entry(int region, int zone, int set)
+    {
+        return (region * ZONES + zone) * present.length + set;
+    }
+
+    /**
+     * Writes the cube to a file, first to a temporary file so a reader never sees half a cube
+     * @param Path file the file
+     * @param String fingerprint the fingerprint of the data the cube was built from
+     */
+    public void write(Path file, String fingerprint)
+    {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                writeStrings(out, regions);
+                writeStrings(out, years);
+                writeStrings(out, pollutants);
+                for (int set = 0; set < present.length; set++){
+                    out.writeBoolean(present[set]);
+                    out.writeUTF(units[set] == null ? "" : units[set]);
+                }
+                for (int entry = 0; entry < counts.length; entry++){
+                    out.writeInt(counts[entry]);
+                    out.writeDouble(sums[entry]);
+                    out.writeDouble(squares[entry]);
+                    out.writeDouble(lowest[entry]);
+                    DataPoint point = highest[entry];
+                    out.writeBoolean(point != null);
+                    if (point != null){
+                        out.writeInt(point.gridCode());
+                        out.writeInt(point.x());
+                        out.writeInt(point.y());
+                        out.writeDouble(point.value());
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            // the cube is only kept to save building it on the next launch
+            System.out.println("Could not write aggregate cube " + file);
+            try {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Reads a cube written by write
+     * @param Path file the file
+     * @param String fingerprint the fingerprint of the data the cube must have been built from
+     * @return AggregateCube the cube, or null if there is none or it was built from other data
+     */
+    public static AggregateCube read(Path file, String fingerprint)
+    {
+        if (!Files.exists(file)){
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(fingerprint)){
+                return null;
+            }
+            AggregateCube cube = new AggregateCube(readStrings(in), readStrings(in), readStrings(in));
+            for (int set = 0; set < cube.present.length; set++){
+                cube.present[set] = in.readBoolean();
+                cube.units[set] = in.readUTF();
+            }
+            for (int entry = 0; entry < cube.counts.length; entry++){
+                cube.counts[entry] = in.readInt();
+                cube.sums[entry] = in.readDouble();
+                cube.squares[entry] = in.readDouble();
+                cube.lowest[entry] = in.readDouble();
+                if (in.readBoolean()){
+                    cube.highest[entry] = new DataPoint(in.readInt(), in.readInt(), in.readInt(), in.readDouble());
+                }
+            }
+            return cube;
+        }
+        catch (IOException | RuntimeException e) {
+            // a damaged file is treated as missing, the cube is built again
+            System.out.println("Could not read aggregate cube " + file);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a list of strings as its length followed by each string
+     */
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException
+    {
+        out.writeInt(strings.size());
+        for (String string : strings){
+            out.writeUTF(string);
+        }
+    }
+
+    /**
+     * Reads a list of strings written by writeStrings
+     */
+    private static List<String> readStrings(DataInputStream in) throws IOException
+    {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
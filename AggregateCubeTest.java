@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import javafx.scene.image.WritableImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The test class AggregateCubeTest checks the totals of an aggregate cube against Statistics,
+ * and that a cube written to a file reads back the same only while its fingerprint matches.
+ *
+ * The repository reads a small data folder written for the test, so the cube is built
+ * without the DEFRA files.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class AggregateCubeTest
+{
+    private TestDataFolder folder;
+    private RepositorySnapshot snapshot;
+    private Region region;
+    private Path file;
+
+    /**
+     * Default constructor for test class AggregateCubeTest
+     */
+    public AggregateCubeTest()
+    {
+    }
+
+    /**
+     * Sets up a repository of a data folder with every type and year over a grid of 20 by 20 cells.
+     */
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        folder = TestDataFolder.create("AggregateCubeTestData");
+        snapshot = folder.repository().snapshot();
+        region = new Region("TestRegion", new WritableImage(1, 1), 15000, 0, 0, 12000);
+        file = Files.createTempFile("aggregates", ".cube");
+    }
+
+    /**
+     * Deletes the cube file and the data folder.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+        folder.delete();
+    }
+
+    /**
+     * Test method for the totals of every zone, year and pollutant against Statistics.
+     */
+    @Test
+    public void testTotalsMatchStatistics()
+    {
+        assertEquals(TestDataFolder.TYPES.size(), snapshot.getTypes().size());
+        assertEquals(TestDataFolder.YEARS, snapshot.getYears());
+        AggregateCube cube = AggregateCube.build(snapshot, List.of(region), ForkJoinPool.commonPool());
+        assertTrue(cube.covers(region));
+        assertFalse(cube.covers(new Region("Other", new WritableImage(1, 1), 15000, 0, 0, 13000)));
+
+        Statistics stats = new Statistics(region);
+        for (String type : snapshot.getTypes()){
+            for (String year : snapshot.getYears(type)){
+                DataSet dataSet = snapshot.acquireSet(year, type);
+                try {
+                    for (String zone : zones()){
+                        AggregateCube.Aggregate aggregate = cube.get(region, zone, year, type);
+                        String name = type + " " + year + " " + zone;
+                        assertEquals(stats.calculateAvgPollution(dataSet, zone), aggregate.average(), 1e-9, name);
+                        assertEquals(stats.calculateVariance(dataSet, zone), aggregate.variance(), 1e-6, name);
+                        assertEquals(stats.getHighestPollution(dataSet, zone), aggregate.highest(), name);
+                        assertEquals(dataSet.getUnits(), aggregate.units(), name);
+                    }
+                }
+                finally {
+                    dataSet.release();
+                }
+            }
+        }
+        assertNull(cube.get(region, "All Zones", "1066", snapshot.getTypes().get(0)));
+        assertNull(cube.get(region, "Nowhere", snapshot.getYears().get(0), snapshot.getTypes().get(0)));
+    }
+
+    /**
+     * Test method for a cube written to a file and read back with the same fingerprint.
+     */
+    @Test
+    public void testWriteReadRoundTrip()
+    {
+        AggregateCube cube = AggregateCube.build(snapshot, List.of(region), ForkJoinPool.commonPool());
+        cube.write(file, "fingerprint");
+        AggregateCube read = AggregateCube.read(file, "fingerprint");
+        assertNotNull(read);
+        assertTrue(read.covers(region));
+        for (String type : snapshot.getTypes()){
+            for (String year : snapshot.getYears()){
+                for (String zone : zones()){
+                    assertNotNull(cube.get(region, zone, year, type));
+                    assertEquals(cube.get(region, zone, year, type), read.get(region, zone, year, type),
+                                 type + " " + year + " " + zone);
+                }
+            }
+        }
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    /**
+     * Test method for a cube file that was written for other data, is damaged or is missing.
+     */
+    @Test
+    public void testReadRejectsOtherFingerprintAndDamagedFile() throws IOException
+    {
+        AggregateCube cube = AggregateCube.build(snapshot, List.of(region), ForkJoinPool.commonPool());
+        cube.write(file, "fingerprint");
+        assertNull(AggregateCube.read(file, "other fingerprint"));
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(AggregateCube.read(file, "fingerprint"));
+
+        Files.delete(file);
+        assertNull(AggregateCube.read(file, "fingerprint"));
+    }
+
+    /**
+     * Returns the names of the nine zones and the whole region
+     */
+    private static List<String> zones()
+    {
+        List<String> zones = new ArrayList<>(Statistics.ZONES);
+        zones.add("All Zones");
+        return zones;
+    }
+}
@@ -0,0 +1,266 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses the rows of a DEFRA csv file straight from its bytes into primitive values,
+ * without creating Strings or arrays for each row.
+ *
+ * Each data row holds four columns, gridcode, x, y, value. Like DataSet.addData, a column
+ * that is not a readable number is returned as -1 (or -1.0 for the value).
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class ByteRowParser
+{
+    // powers of ten that are exact as doubles, used to place the decimal point
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+    // largest mantissa that a double holds exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int pos;
+
+    private int gridCode;
+    private int x;
+    private int y;
+    private double value;
+
+    /**
+     * Constructor for objects of class ByteRowParser
+     * @param ByteBuffer buffer the bytes of the file, read with absolute gets so its position is left alone
+     * @param int start index of the first byte to parse
+     * @param int end index one past the last byte to parse
+     */
+    public ByteRowParser(ByteBuffer buffer, int start, int end)
+    {
+        this.buffer = buffer;
+        this.pos = start;
+        this.limit = end;
+    }
+
+    /**
+     * Reads the next line of the header and returns its first column
+     * @return String the first column of the line
+     */
+    public String readHeader()
+    {
+        int start = pos;
+        while (pos < limit && buffer.get(pos) != ',' && !isLineEnd(buffer.get(pos))){
+            pos++;
+        }
+        byte[] bytes = new byte[pos - start];
+        buffer.get(start, bytes);
+        skipLine();
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Skips the rest of the current line including its line break
+     */
+    public void skipLine()
+    {
+        while (pos < limit && buffer.get(pos) != '\n'){
+            pos++;
+        }
+        if (pos < limit){
+            pos++;
+        }
+    }
+
+    /**
+     * Parses the next data row. Blank lines are skipped.
+     * @return boolean true if a row was read, false at the end of the bytes
+     */
+    public boolean nextRow()
+    {
+        while (pos < limit && isLineEnd(buffer.get(pos))){
+            pos++;
+        }
+        if (pos >= limit){
+            return false;
+        }
+        gridCode = parseInt();
+        x = parseInt();
+        y = parseInt();
+        value = parseDouble();
+        skipLine();
+        return true;
+    }
+
+    /**
+     * Returns the gridcode of the current row
+     */
+    public int getGridCode()
+    {
+        return gridCode;
+    }
+
+    /**
+     * Returns the x coordinate (easting) of the current row
+     */
+    public int getX()
+    {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate (northing) of the current row
+     */
+    public int getY()
+    {
+        return y;
+    }
+
+    /**
+     * Returns the value of the current row
+     */
+    public double getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Returns the index of the next byte to be parsed
+     */
+    public int getPosition()
+    {
+        return pos;
+    }
+
+    /**
+     * Parses an int column and moves past its trailing comma
+     * @return int the value, or -1 if the column is not a readable int
+     */
+    private int parseInt()
+    {
+        boolean negative = false;
+        if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')){
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long result = 0;
+        boolean valid = pos < limit && !isColumnEnd(buffer.get(pos));
+        while (pos < limit && !isColumnEnd(buffer.get(pos))){
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9 || result > Integer.MAX_VALUE + 1L){
+                valid = false;
+            }
+            else{
+                result = result * 10 + digit;
+            }
+            pos++;
+        }
+        endColumn();
+        if (negative){
+            result = -result;
+        }
+        if (!valid || result > Integer.MAX_VALUE || result < Integer.MIN_VALUE){
+            return -1;
+        }
+        return (int) result;
+    }
+
+    /**
+     * Parses a double column and moves past its trailing comma. Plain decimals such as 12.345
+     * are parsed from the digits, anything else falls back to Double.parseDouble.
+     * @return double the value, or -1.0 if the column is not a readable number
+     */
+    private double parseDouble()
+    {
+        int start = pos;
+        boolean negative = false;
+        if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')){
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean plain = true;
+        while (pos < limit && !isColumnEnd(buffer.get(pos))){
+            byte b = buffer.get(pos);
+            if (b >= '0' && b <= '9'){
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0){
+                    fractionDigits++;
+                }
+                plain = plain && digits < POWERS_OF_TEN.length;
+            }
+            else if (b == '.' && fractionDigits < 0){
+                fractionDigits = 0;
+            }
+            else{
+                plain = false;
+            }
+            pos++;
+        }
+        int end = pos;
+        endColumn();
+
+        if (plain && digits > 0 && mantissa <= MAX_EXACT_MANTISSA){
+            // both numbers are exact doubles, so the division is rounded the same way parseDouble rounds
+            double result = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -result : result;
+        }
+        return parseSlow(start, end);
+    }
+
+    /**
+     * Parses a column that is not a plain decimal. Text such as MISSING is rejected without
+     * creating a String, since only a column holding a digit (or NaN/Infinity) can be a number.
+     * @param int start index of the first byte of the column
+     * @param int end index one past the last byte of the column
+     * @return double the value, or -1.0 if the column is not a readable number
+     */
+    private double parseSlow(int start, int end)
+    {
+        boolean candidate = false;
+        for (int i = start; i < end && !candidate; i++){
+            byte b = buffer.get(i);
+            candidate = (b >= '0' && b <= '9') || b == 'N' || b == 'I';
+        }
+        if (!candidate){
+            return -1.0;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        try {
+            return Double.parseDouble(new String(bytes, Charset.defaultCharset()));
+        }
+        catch (NumberFormatException exc) {
+            return -1.0;
+        }
+    }
+
+    /**
+     * Moves past the comma ending the current column, if there is one
+     */
+    private void endColumn()
+    {
+        if (pos < limit && buffer.get(pos) == ','){
+            pos++;
+        }
+    }
+
+    /**
+     * Checks if a byte ends a column
+     */
+    private static boolean isColumnEnd(byte b)
+    {
+        return b == ',' || isLineEnd(b);
+    }
+
+    /**
+     * Checks if a byte is part of a line break
+     */
+    private static boolean isLineEnd(byte b)
+    {
+        return b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The test class ByteRowParserTest checks that the byte parser reads every column exactly as
+ * Integer.parseInt and Double.parseDouble would, with -1 for a column they reject.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class ByteRowParserTest
+{
+    private static final String[] INTS = {
+        "0", "7", "-7", "+7", "-0", "123456", "2147483647", "-2147483648", "2147483648",
+        "-2147483649", "99999999999", "", " 5", "5 ", "5.0", "1e3", "MISSING", "-", "+", "0x10"
+    };
+    private static final String[] DOUBLES = {
+        "0", "0.0", "-0.0", "12.345", "-12.345", "+12.345", ".5", "5.", "-.5", "0.1", "1e3",
+        "1E-3", "-2.5e+2", "123456789012345678", "0.12345678901234567890", "9007199254740993",
+        "", " ", "MISSING", "missing", "-", ".", "e5", "NaN", "Infinity", "-Infinity", " 1.5",
+        "1.5 ", "1.5.2", "1,5", "0x1p3", "1.5d", "--1"
+    };
+
+    /**
+     * Default constructor for test class ByteRowParserTest
+     */
+    public ByteRowParserTest()
+    {
+    }
+
+    /**
+     * Test method for int columns with signs, overflow, blanks and text.
+     */
+    @Test
+    public void testIntColumnsMatchParseInt()
+    {
+        for (String column : INTS){
+            ByteRowParser parser = parser(column + "," + column + "," + column + ",1.0\n");
+            assertTrue(parser.nextRow(), column);
+            int expected = parseInt(column);
+            assertEquals(expected, parser.getGridCode(), "gridcode " + column);
+            assertEquals(expected, parser.getX(), "x " + column);
+            assertEquals(expected, parser.getY(), "y " + column);
+        }
+    }
+
+    /**
+     * Test method for value columns with signs, exponents, long mantissas, blanks and text.
+     */
+    @Test
+    public void testValueColumnsMatchParseDouble()
+    {
+        for (String column : DOUBLES){
+            ByteRowParser parser = parser("1,2,3," + column + "\n");
+            assertTrue(parser.nextRow(), column);
+            if (column.equals("1,5")){
+                //the comma ends the column, so only 1 is read
+                assertEquals(1.0, parser.getValue(), column);
+                continue;
+            }
+            assertEquals(parseDouble(column), parser.getValue(), "value " + column);
+        }
+    }
+
+    /**
+     * Test method for blank lines, CRLF line breaks and a last row without a line break.
+     */
+    @Test
+    public void testRowsAndLineBreaks()
+    {
+        ByteRowParser parser = parser("\r\n1,1500,2500,3.5\r\n\n\r\n2,2500,3500,MISSING\n3,3500,4500,1e1");
+        assertTrue(parser.nextRow());
+        assertEquals(1, parser.getGridCode());
+        assertEquals(3.5, parser.getValue());
+        assertTrue(parser.nextRow());
+        assertEquals(2500, parser.getX());
+        assertEquals(-1.0, parser.getValue());
+        assertTrue(parser.nextRow());
+        assertEquals(4500, parser.getY());
+        assertEquals(10.0, parser.getValue());
+        assertFalse(parser.nextRow());
+    }
+
+    /**
+     * Returns a parser over the bytes of some text
+     */
+    private static ByteRowParser parser(String text)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        return new ByteRowParser(buffer, 0, buffer.limit());
+    }
+
+    /**
+     * Parses an int as DataSet.addData expects it, -1 if it is not readable
+     */
+    private static int parseInt(String column)
+    {
+        try {
+            return Integer.parseInt(column);
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a double as DataSet.addData expects it, -1.0 if it is not readable
+     */
+    private static double parseDouble(String column)
+    {
+        try {
+            return Double.parseDouble(column);
+        }
+        catch (NumberFormatException e) {
+            return -1.0;
+        }
+    }
+}
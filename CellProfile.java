@@ -0,0 +1,27 @@
+import java.util.List;
+
+/**
+ * Every pollutant and year of a single 1 km grid cell, as read from a PollutionCube.
+ * Missing values are -1.0.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public record CellProfile(int gridCode, int x, int y, List<String> years, List<String> pollutants, double[] values)
+{
+    /**
+     * Returns the value of a pollutant in a year
+     * @param String pollutant the pollutant, as listed in pollutants()
+     * @param String year the year, as listed in years()
+     * @return double the value, or -1.0 if the cell has no such value
+     */
+    public double getValue(String pollutant, String year)
+    {
+        int p = pollutants.indexOf(pollutant);
+        int y = years.indexOf(year);
+        if (p < 0 || y < 0){
+            return PollutionCube.MISSING_VALUE;
+        }
+        return values[p * years.size() + y];
+    }
+}
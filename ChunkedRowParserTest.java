@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The test class ChunkedRowParserTest checks that parsing the rows of a file in chunks gives
+ * exactly the rows a single ByteRowParser reads, however the chunks fall.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class ChunkedRowParserTest
+{
+    private static final DataHeader HEADER = new DataHeader("NO2", "2023", "annual mean", "ug m-3");
+
+    /**
+     * Default constructor for test class ChunkedRowParserTest
+     */
+    public ChunkedRowParserTest()
+    {
+    }
+
+    /**
+     * Test method for rows with LF and CRLF line breaks, blank lines, quoted and missing values
+     * and no final line break, split into every number of chunks from 1 to one per row, so that
+     * chunk boundaries land inside rows, line breaks and quotes.
+     */
+    @Test
+    public void testChunksMatchSequentialParse()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++){
+            String value;
+            switch (i % 6){
+                case 0: value = "12.345"; break;
+                case 1: value = "MISSING"; break;
+                case 2: value = "\"7.5\""; break;
+                case 3: value = "-0.25e1"; break;
+                case 4: value = ""; break;
+                default: value = String.valueOf(i * 1.5); break;
+            }
+            text.append(100000 + i).append(',').append(500 + i * 1000).append(',')
+                .append("\"").append(1500 + i).append("\"").append(',').append(value);
+            text.append(i % 2 == 0 ? "\r\n" : "\n");
+            if (i % 7 == 0){
+                text.append("\r\n");
+            }
+        }
+        text.append("200000,1500,2500,9.75");
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+        int end = buffer.limit();
+
+        DataSet expected = new DataSet(HEADER.pollutant(), HEADER.year(), HEADER.metric(), HEADER.units());
+        ByteRowParser parser = new ByteRowParser(buffer, 0, end);
+        while (parser.nextRow()){
+            expected.addData(parser.getGridCode(), parser.getX(), parser.getY(), parser.getValue());
+        }
+        assertEquals(61, expected.size());
+
+        for (int chunks = 1; chunks <= 64; chunks++){
+            DataSet dataSet = ChunkedRowParser.parse(buffer, 0, end, HEADER, chunks);
+            assertEquals(expected.size(), dataSet.size(), chunks + " chunks");
+            for (int i = 0; i < expected.size(); i++){
+                assertEquals(expected.getGridCode(i), dataSet.getGridCode(i), chunks + " chunks, row " + i);
+                assertEquals(expected.getX(i), dataSet.getX(i), chunks + " chunks, row " + i);
+                assertEquals(expected.getY(i), dataSet.getY(i), chunks + " chunks, row " + i);
+                assertEquals(expected.getValue(i), dataSet.getValue(i), chunks + " chunks, row " + i);
+            }
+        }
+    }
+
+    /**
+     * Test method for the header of the file being kept and an empty range of rows.
+     */
+    @Test
+    public void testEmptyRows()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap("\r\n\n".getBytes(StandardCharsets.US_ASCII));
+        DataSet dataSet = ChunkedRowParser.parse(buffer, 0, buffer.limit(), HEADER, 3);
+        assertEquals(0, dataSet.size());
+        assertEquals("NO2", dataSet.getPollutant());
+        assertEquals("2023", dataSet.getYear());
+    }
+}
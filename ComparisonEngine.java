@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compares the average pollution of any number of selections, each a region, zone and year,
+ * for several pollutants in one go, for example all four cities across every year.
+ *
+ * Averages the aggregate cube already holds are looked up in it. The rest are grouped by the
+ * dataset they need, so each dataset is located and gone through once for all the selections
+ * on it, and the datasets are worked on at the same time on a fork-join pool.
+ *
+ * @author Ali Demir and Yousef Omer-Hashi
+ * @version 24/03/25
+ */
+public class ComparisonEngine
+{
+    /**
+     * One column of a comparison: a region, a zone of it and a year, under a name to show
+     */
+    public record Selection(String name, Region region, String zone, String year)
+    {
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for an engine working on the common fork-join pool
+     */
+    public ComparisonEngine()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for objects of class ComparisonEngine
+     * @param ForkJoinPool pool the pool the datasets are worked on
+     */
+    public ComparisonEngine(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Works out the average of every selection for every pollutant, all from the same
+     * version of the data
+     * @param DataRepository repo the repository holding the datasets
+     * @param List<Selection> selections the selections to compare
+     * @param List<String> pollutants the pollutants to compare them on, in any case
+     * @return ComparisonMatrix the averages, NaN where there is no data for a year and pollutant or
+     *         no data point in the zone
+     */
+    public ComparisonMatrix compare(DataRepository repo, List<Selection> selections, List<String> pollutants)
+    {
+        RepositorySnapshot data = repo.snapshot();
+        AggregateCube cube = repo.getAggregateCube(data);
+        double[][] averages = new double[selections.size()][pollutants.size()];
+        String[][] units = new String[selections.size()][pollutants.size()];
+
+        // the selections the cube cannot answer, by the dataset they need
+        Map<SetKey, List<Integer>> bySet = new LinkedHashMap<>();
+        for (int p = 0; p < pollutants.size(); p++){
+            for (int s = 0; s < selections.size(); s++){
+                Selection selection = selections.get(s);
+                averages[s][p] = Double.NaN;
+                AggregateCube.Aggregate aggregate = cube == null ? null
+                    : cube.get(selection.region(), selection.zone(), selection.year(), pollutants.get(p));
+                if (aggregate != null){
+                    averages[s][p] = aggregate.count() == 0 ? Double.NaN : aggregate.average();
+                    units[s][p] = aggregate.units();
+                }
+                else {
+                    bySet.computeIfAbsent(new SetKey(p, selection.year()), key -> new ArrayList<>()).add(s);
+                }
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Map.Entry<SetKey, List<Integer>> entry : bySet.entrySet()){
+            SetKey set = entry.getKey();
+            List<Integer> onSet = entry.getValue();
+            tasks.add(ForkJoinTask.adapt(() -> {
+                DataSet dataSet = data.acquireSet(set.year(), pollutants.get(set.pollutant()));
+                if (dataSet == null){
+                    return;
+                }
+                try {
+                    // the first query builds the dataset's summed-area tables, the rest read them
+                    for (int s : onSet){
+                        Selection selection = selections.get(s);
+                        StatisticsQuery.Result result = new Statistics(selection.region()).query(dataSet)
+                            .zone(selection.zone()).aggregate(StatisticsQuery.Aggregate.AVG, StatisticsQuery.Aggregate.COUNT);
+                        if (result.count() > 0){
+                            averages[s][set.pollutant()] = result.get(StatisticsQuery.Aggregate.AVG);
+                        }
+                        units[s][set.pollutant()] = dataSet.getUnits();
+                    }
+                }
+                finally {
+                    dataSet.release();
+                }
+            }));
+        }
+        // each task fills the cells of its own dataset, so no two tasks write the same cell
+        pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+        return new ComparisonMatrix(selections, pollutants, averages, units);
+    }
+
+    /**
+     * A pollutant, by its position in the list being compared, and a year
+     */
+    private record SetKey(int pollutant, String year)
+    {
+    }
+}
@@ -3,7 +3,8 @@ import java.util.List;
 
 /**
  * This class provides the logic for comparing pollutant data between 
- * between multiple regions, years and locations
+ * between multiple regions, years and locations. The two locations are
+ * compared as a batch of two by the ComparisonEngine.
  *
  * @author Yousef Omer-Hashi
  * @version 1.0
@@ -19,27 +20,27 @@ public class ComparisonLogic
      * @param year2 The second year of data
      * @param repo The data repository containg pollution datasets
      * @return a hashmap with the pollutant as the key and a Comparison Result containing
-     * both average pollution data values and units
+     * both average pollution data values and units. An average is NaN if there is no data
+     * for it.
      */
     public static HashMap<String, ComparisonResult> 
     comparePollutants(Region region1, String regionName1, 
     String year1, Region region2, String regionName2, String year2, DataRepository repo)
     {
-        Statistics s1 = new Statistics(region1);
-        Statistics s2 = new Statistics(region2);
-        
         String[] pollutants = {"NO2", "PM10", "PM2.5"};
         HashMap <String, ComparisonResult> results = new HashMap<>();
+        // the two locations are the two rows of a batch comparison
+        List<ComparisonEngine.Selection> selections = List.of(
+            new ComparisonEngine.Selection("Location 1", region1, regionName1, year1),
+            new ComparisonEngine.Selection("Location 2", region2, regionName2, year2));
+        ComparisonMatrix matrix = new ComparisonEngine().compare(repo, selections, List.of(pollutants));
         
         for (String pollutant: pollutants) {
-            DataSet ds1 = repo.locateSet(year1, pollutant);
-            DataSet ds2 = repo.locateSet(year2, pollutant);
-            
-            double avg1 = getAverage(s1, ds1, regionName1);
-            double avg2 = getAverage(s2, ds2, regionName2);
+            double avg1 = matrix.getAverage(0, pollutant);
+            double avg2 = matrix.getAverage(1, pollutant);
             
-            String units = (ds1 != null) ? ds1.getUnits() : "";
-            results.put(pollutant, new ComparisonResult(avg1, avg2, units));
+            // a year without data stays NaN, so it is not mistaken for no pollution
+            results.put(pollutant, new ComparisonResult(avg1, avg2, matrix.getUnits(pollutant)));
        }
        return results;
         
@@ -58,8 +59,6 @@ public class ComparisonLogic
         if (ds == null) {
             return 0.0;
         }
-        List<DataPoint> mapPoints = stats.filterDataWithinZone(ds.getData());
-        List<DataPoint> zonePoints = stats.filterByZone(mapPoints, zone);
-        return stats.calculateAvgPollution(zonePoints);
+        return stats.calculateAvgPollution(ds, zone);
     }
 }
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The averages worked out by a ComparisonEngine, one for each selection and pollutant, and
+ * the league table of the selections for a pollutant.
+ *
+ * @author Ali Demir and Yousef Omer-Hashi
+ * @version 24/03/25
+ */
+public class ComparisonMatrix
+{
+    /**
+     * The place of a selection in a league table, 1 for the least polluted
+     */
+    public record Standing(int rank, String name, double average, String units)
+    {
+    }
+
+    private final List<ComparisonEngine.Selection> selections;
+    private final List<String> pollutants;
+    private final double[][] averages;
+    private final String[][] units;
+
+    /**
+     * Constructor for objects of class ComparisonMatrix
+     * @param List<ComparisonEngine.Selection> selections the selections, one row each
+     * @param List<String> pollutants the pollutants, one column each
+     * @param double[][] averages the average of each selection and pollutant, NaN if there is no data
+     * @param String[][] units the units of each average, null if there is no data
+     */
+    ComparisonMatrix(List<ComparisonEngine.Selection> selections, List<String> pollutants,
+                     double[][] averages, String[][] units)
+    {
+        this.selections = List.copyOf(selections);
+        this.pollutants = List.copyOf(pollutants);
+        this.averages = averages;
+        this.units = units;
+    }
+
+    /**
+     * Returns the selections in the order they were compared
+     */
+    public List<ComparisonEngine.Selection> getSelections()
+    {
+        return selections;
+    }
+
+    /**
+     * Returns the pollutants in the order they were compared
+     */
+    public List<String> getPollutants()
+    {
+        return pollutants;
+    }
+
+    /**
+     * Returns the average of a selection for a pollutant
+     * @param int selection the position of the selection
+     * @param String pollutant the pollutant, in any case
+     * @return double the average, or NaN if there is no data for it
+     */
+    public double getAverage(int selection, String pollutant)
+    {
+        int p = column(pollutant);
+        return p < 0 ? Double.NaN : averages[selection][p];
+    }
+
+    /**
+     * Returns the units of the averages of a pollutant
+     * @param String pollutant the pollutant, in any case
+     * @return String the units, or "" if there is no data for the pollutant
+     */
+    public String getUnits(String pollutant)
+    {
+        int p = column(pollutant);
+        if (p >= 0){
+            for (String[] row : units){
+                if (row[p] != null){
+                    return row[p];
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Ranks the selections by their average for a pollutant, the least polluted first. Selections
+     * with equal averages share a place, and those without data are left out.
+     * @param String pollutant the pollutant, in any case
+     * @return List<Standing> the league table
+     */
+    public List<Standing> rank(String pollutant)
+    {
+        List<Standing> table = new ArrayList<>();
+        int p = column(pollutant);
+        if (p < 0){
+            return table;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int s = 0; s < selections.size(); s++){
+            if (!Double.isNaN(averages[s][p])){
+                order.add(s);
+            }
+        }
+        order.sort(Comparator.comparingDouble(s -> averages[s][p]));
+        for (int i = 0; i < order.size(); i++){
+            int s = order.get(i);
+            boolean tied = i > 0 && averages[s][p] == table.get(i - 1).average();
+            int rank = tied ? table.get(i - 1).rank() : i + 1;
+            table.add(new Standing(rank, selections.get(s).name(), averages[s][p], units[s][p]));
+        }
+        return table;
+    }
+
+    /**
+     * Returns the position of a pollutant, or -1 if it was not compared
+     */
+    private int column(String pollutant)
+    {
+        for (int p = 0; p < pollutants.size(); p++){
+            if (pollutants.get(p).equalsIgnoreCase(pollutant.trim())){
+                return p;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The test class ComparisonMatrixTest contains unit tests for the league table of a comparison.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class ComparisonMatrixTest
+{
+    /**
+     * Default constructor for test class ComparisonMatrixTest
+     */
+    public ComparisonMatrixTest()
+    {
+    }
+
+    /**
+     * Test method for selections with equal averages sharing a place, the next place being
+     * skipped after them, and selections without data being left out.
+     */
+    @Test
+    public void testRankWithTies()
+    {
+        ComparisonMatrix matrix = matrix(new double[]{5.0, 3.0, 5.0, Double.NaN, 3.0, 7.0});
+        List<ComparisonMatrix.Standing> table = matrix.rank("no2");
+
+        assertEquals(5, table.size());
+        //equal averages keep the order they were compared in
+        assertEquals(new ComparisonMatrix.Standing(1, "B", 3.0, "ug m-3"), table.get(0));
+        assertEquals(new ComparisonMatrix.Standing(1, "E", 3.0, "ug m-3"), table.get(1));
+        assertEquals(new ComparisonMatrix.Standing(3, "A", 5.0, "ug m-3"), table.get(2));
+        assertEquals(new ComparisonMatrix.Standing(3, "C", 5.0, "ug m-3"), table.get(3));
+        assertEquals(new ComparisonMatrix.Standing(5, "F", 7.0, "ug m-3"), table.get(4));
+    }
+
+    /**
+     * Test method for every selection having the same average.
+     */
+    @Test
+    public void testRankAllTied()
+    {
+        List<ComparisonMatrix.Standing> table = matrix(new double[]{2.0, 2.0, 2.0}).rank("NO2");
+        assertEquals(3, table.size());
+        for (ComparisonMatrix.Standing standing : table){
+            assertEquals(1, standing.rank());
+        }
+    }
+
+    /**
+     * Test method for a pollutant that was not compared or has no data at all.
+     */
+    @Test
+    public void testRankWithoutData()
+    {
+        assertTrue(matrix(new double[]{1.0, 2.0}).rank("pm10").isEmpty());
+        assertTrue(matrix(new double[]{Double.NaN, Double.NaN}).rank("NO2").isEmpty());
+        assertTrue(Double.isNaN(matrix(new double[]{1.0}).getAverage(0, "pm10")));
+        assertEquals("", matrix(new double[]{Double.NaN}).getUnits("NO2"));
+    }
+
+    /**
+     * Returns a matrix of NO2 averages for selections named A, B, C and so on
+     */
+    private static ComparisonMatrix matrix(double[] no2)
+    {
+        List<ComparisonEngine.Selection> selections = new ArrayList<>();
+        double[][] averages = new double[no2.length][];
+        String[][] units = new String[no2.length][];
+        for (int i = 0; i < no2.length; i++){
+            selections.add(new ComparisonEngine.Selection(String.valueOf((char) ('A' + i)), null, "All Zones", "2023"));
+            averages[i] = new double[]{no2[i]};
+            units[i] = new String[]{Double.isNaN(no2[i]) ? null : "ug m-3"};
+        }
+        return new ComparisonMatrix(selections, List.of("NO2"), averages, units);
+    }
+}
@@ -1,6 +1,6 @@
 /**
  * ComparisonResult stores average pollution values for two regions for a specified pollutant
- * and the units of measurement.
+ * and the units of measurement. An average is NaN if there is no data for it.
  *
  * @author Yousef Omer-Hashi
  * @version 1.0
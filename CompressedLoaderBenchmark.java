@@ -0,0 +1,96 @@
+/**
+ * Measures how quickly the bundled DEFRA files are loaded from plain csv files by the
+ * memory-mapped loader compared with gzip compressed copies of them (.csv.gz) read through
+ * the decompressing stream.
+ *
+ * The first round of each loader reads files this program has not read yet, so for cold
+ * page cache figures drop the operating system's file cache before running, e.g. on Linux
+ * with "sync; echo 3 > /proc/sys/vm/drop_caches". The later rounds read files that are in
+ * the page cache and give the warm figures. The compressed copies are made with "gzip -k"
+ * next to the csv files.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class CompressedLoaderBenchmark
+{
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int TIMED_ROUNDS = 3;
+
+    private static final String[] FILES = {
+        "UKAirPollutionData/NO2/mapno22018.csv",
+        "UKAirPollutionData/NO2/mapno22023.csv",
+        "UKAirPollutionData/pm2.5/mappm252018g.csv",
+        "UKAirPollutionData/pm2.5/mappm252023g.csv",
+        "UKAirPollutionData/pm10/mappm102018g.csv",
+        "UKAirPollutionData/pm10/mappm102023g.csv"
+    };
+
+    /**
+     * Runs the benchmark and prints rows per second on a cold and a warm page cache
+     */
+    public static void main(String[] args)
+    {
+        DataLoader loader = new DataLoader(true);
+        String[] compressed = new String[FILES.length];
+        for (int i = 0; i < FILES.length; i++){
+            compressed[i] = FILES[i] + ".gz";
+            if (loader.resolvePath(compressed[i]) == null){
+                System.out.println("Missing " + compressed[i] + ", make it with gzip -k");
+                return;
+            }
+        }
+        run("csv", loader, FILES);
+        run("csv.gz", loader, compressed);
+    }
+
+    /**
+     * Loads every file once for the cold figure, then a few more times for the warm figure
+     * @param String name name of the files to print
+     * @param DataLoader loader the loader to use
+     * @param String[] files the files to load
+     */
+    private static void run(String name, DataLoader loader, String[] files)
+    {
+        long start = System.nanoTime();
+        long rows = loadAll(loader, files);
+        print(name + " cold", rows, System.nanoTime() - start);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++){
+            loadAll(loader, files);
+        }
+        rows = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++){
+            rows += loadAll(loader, files);
+        }
+        print(name + " warm", rows / TIMED_ROUNDS, (System.nanoTime() - start) / TIMED_ROUNDS);
+    }
+
+    /**
+     * Prints the time of a round and its throughput
+     */
+    private static void print(String name, long rows, long nanos)
+    {
+        System.out.printf("%-12s %8.0f ms per round, %6.2f million rows/s%n",
+                          name, nanos / 1e6, rows / (nanos / 1e9) / 1e6);
+    }
+
+    /**
+     * Loads every file once
+     * @param DataLoader loader the loader to use
+     * @param String[] files the files to load
+     * @return long the number of rows loaded
+     */
+    private static long loadAll(DataLoader loader, String[] files)
+    {
+        long rows = 0;
+        for (String file : files){
+            DataSet dataSet = loader.loadDataFile(file);
+            if (dataSet != null){
+                rows += dataSet.size();
+            }
+        }
+        return rows;
+    }
+}
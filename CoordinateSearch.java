@@ -84,7 +84,11 @@ public class CoordinateSearch extends Search
     {
         String year = yearSelector.getValue();
         String pollutant = pollutantSelector.getValue();
-        DataSet dataset = repo.locateSet(year, pollutant.toLowerCase());
+        DataSet dataset = repo.acquireSet(year, pollutant.toLowerCase());
+        if (dataset == null){
+            resultLabel.setText("No available data");
+            return;
+        }
 
         //clean x and y to find closest data point if not ending in 500
         if (x % 500 != 0){
@@ -95,14 +99,17 @@ public class CoordinateSearch extends Search
             y = findClosestPoint(y);
         }
 
-        //Find datapoint assoiciated with x and y
-        for (DataPoint data : dataset.getData()){
-            if (data.x() == x && data.y() == y){
-
-                resultLabel.setText("Pollution value : " + data.value() + "\n      (" + x + "," + y + ")" );
+        //Find datapoint assoiciated with x and y through the grid index
+        try {
+            int index = dataset.indexOf(x, y);
+            if (index != GridIndex.MISSING){
+                resultLabel.setText("Pollution value : " + dataset.getValue(index) + "\n      (" + x + "," + y + ")" );
                 return;
             }
         }
+        finally {
+            dataset.release();
+        }
         resultLabel.setText("No available data");
     }
 
@@ -115,7 +122,7 @@ public class CoordinateSearch extends Search
     
     protected int findClosestPoint(Integer val)
     {
-        return ((val/1000) * 1000) + 500;
+        return GridIndex.cellCentre(val);
     }
 
     /**
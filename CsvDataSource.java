@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A dataset parsed from a DEFRA csv file, plain or gzip compressed, by the memory-mapped
+ * DataLoader. Large files are parsed in chunks on several threads.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class CsvDataSource implements DataSource
+{
+    private final String fileName;
+
+    /**
+     * Constructor for objects of class CsvDataSource
+     * @param String fileName the data file, as passed to DataLoader
+     */
+    public CsvDataSource(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Starts parsing the file
+     * @param Executor executor runs the load
+     * @return CompletableFuture<DataSet> completes with the dataset, or with null if the file could not be read
+     */
+    public CompletableFuture<DataSet> load(Executor executor)
+    {
+        return CompletableFuture.supplyAsync(this::parse, executor);
+    }
+
+    /**
+     * Returns the name of the file
+     */
+    public String getName()
+    {
+        return fileName;
+    }
+
+    /**
+     * Returns the name, size and modification time of the file
+     * @return String the fingerprint, or null if the file could not be found
+     */
+    public String getFingerprint()
+    {
+        Path path = new DataLoader().resolvePath(fileName);
+        if (path == null){
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return fileName + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the file on the current thread
+     * @return DataSet the dataset, or null if the file could not be read
+     */
+    public DataSet parse()
+    {
+        long start = System.nanoTime();
+        DataSet dataSet = new DataLoader(true, true).loadDataFile(fileName);
+        if (dataSet != null){
+            System.out.println("Loaded " + fileName + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return dataSet;
+    }
+}
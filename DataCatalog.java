@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A catalog of the pollution data files in the data folder, so the years and pollutants on
+ * offer come from the files that are there rather than from the code.
+ *
+ * Scanning reads only a few kilobytes of each file: the four line DEFRA header (pollutant,
+ * year, metric, units) and samples of rows from the start and the end of the file, from which
+ * the number of rows is estimated. The rows themselves are loaded by DataRepository when they
+ * are needed. Files holding live data are left out, since they are rewritten while the
+ * program runs.
+ *
+ * Files compressed with gzip (.csv.gz) are catalogued the same way as plain csv files, their
+ * header read through a decompressing stream. Where both a file and its compressed copy are
+ * present the plain file is used, since it loads faster.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class DataCatalog
+{
+    // enough for the header and a few dozen rows
+    private static final int HEADER_SAMPLE_BYTES = 4 * 1024;
+
+    /**
+     * One data file: the type of data (the lower case pollutant), its header, its file name
+     * as passed to DataLoader, its size in bytes and an estimate of its number of rows.
+     */
+    public record Entry(String type, String year, String metric, String units,
+                        String fileName, long bytes, long estimatedRows)
+    {
+    }
+
+    private final Path root;
+    private final String folder;
+    // entries by type/year, in order
+    private final TreeMap<String, Entry> entries;
+
+    /**
+     * Constructor for objects of class DataCatalog
+     * @param Path root the data folder on disk, or null for an empty catalog
+     * @param String folder the name of the data folder as passed to DataLoader
+     */
+    private DataCatalog(Path root, String folder)
+    {
+        this.root = root == null ? null : root.toAbsolutePath().normalize();
+        this.folder = folder;
+        this.entries = new TreeMap<>();
+    }
+
+    /**
+     * Scans a data folder and the folders inside it for data files
+     * @param String folder the name of the data folder as passed to DataLoader, e.g. "UKAirPollutionData"
+     * @return DataCatalog the catalog, which is empty if the folder could not be read
+     */
+    public static DataCatalog scan(String folder)
+    {
+        long start = System.nanoTime();
+        Path root = new DataLoader().resolvePath(folder);
+        DataCatalog catalog = new DataCatalog(root, folder);
+        if (root == null){
+            System.out.println("Could not find " + folder);
+            return catalog;
+        }
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(DataCatalog::isDataFile).sorted().forEach(catalog::add);
+        }
+        catch (IOException e) {
+            System.out.println("Could not scan " + folder);
+            e.printStackTrace();
+        }
+        System.out.println("Catalogued " + catalog.entries.size() + " data files in "
+                           + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return catalog;
+    }
+
+    /**
+     * Reads the header of a data file and adds it to the catalog, replacing the entry for the
+     * same pollutant and year if there is one
+     * @param Path file the file, inside the data folder
+     * @return Entry the new entry, or null if the file is not a data file or could not be read
+     */
+    public synchronized Entry add(Path file)
+    {
+        Path path = file.toAbsolutePath().normalize();
+        if (root == null || !path.startsWith(root) || !isDataFile(path)){
+            return null;
+        }
+        Entry entry = readEntry(path);
+        if (entry != null){
+            entries.put(entry.type() + "/" + entry.year(), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the entry for a year and type of data
+     * @param String year the year
+     * @param String type the lower case type of data
+     * @return Entry the entry, or null if there is no such file
+     */
+    public synchronized Entry getEntry(String year, String type)
+    {
+        return entries.get(type + "/" + year);
+    }
+
+    /**
+     * Returns every entry, ordered by type and then year
+     * @return List<Entry> the entries
+     */
+    public synchronized List<Entry> getEntries()
+    {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Returns every year there is a file for, of any type
+     * @return List<String> years in ascending order
+     */
+    public synchronized List<String> getYears()
+    {
+        TreeSet<String> years = new TreeSet<>();
+        for (Entry entry : entries.values()){
+            years.add(entry.year());
+        }
+        return new ArrayList<>(years);
+    }
+
+    /**
+     * Returns the years there is a file for of one type
+     * @param String type the lower case type of data
+     * @return List<String> years in ascending order
+     */
+    public synchronized List<String> getYears(String type)
+    {
+        List<String> years = new ArrayList<>();
+        for (Entry entry : entries.values()){
+            if (entry.type().equals(type)){
+                years.add(entry.year());
+            }
+        }
+        return years;
+    }
+
+    /**
+     * Returns every type of data there is a file for
+     * @return List<String> lower case types in alphabetical order
+     */
+    public synchronized List<String> getTypes()
+    {
+        TreeSet<String> types = new TreeSet<>();
+        for (Entry entry : entries.values()){
+            types.add(entry.type());
+        }
+        return new ArrayList<>(types);
+    }
+
+    /**
+     * Checks if a path names a data file: a csv file, or a compressed csv file without a plain
+     * copy next to it, which does not hold live data
+     */
+    private static boolean isDataFile(Path file)
+    {
+        String name = file.getFileName().toString();
+        if (name.contains("live") || !Files.isRegularFile(file)){
+            return false;
+        }
+        if (name.endsWith(".csv.gz")){
+            String plainName = name.substring(0, name.length() - ".gz".length());
+            return !Files.isRegularFile(file.resolveSibling(plainName));
+        }
+        return name.endsWith(".csv");
+    }
+
+    /**
+     * Reads the header and a sample of the rows of a data file
+     * @param Path file the file
+     * @return Entry the entry, or null if the file could not be read
+     */
+    private Entry readEntry(Path file)
+    {
+        boolean compressed = DataLoader.isCompressed(file.getFileName().toString());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            // the rows are estimated from the size of the csv data, not of the compressed file
+            long dataBytes = compressed ? uncompressedSize(channel) : bytes;
+            ByteBuffer sample = compressed ? readCompressedSample(file) : readSample(channel, bytes);
+
+            ByteRowParser parser = new ByteRowParser(sample, 0, sample.limit());
+            String pollutant = parser.readHeader().trim();
+            String year = parser.readHeader().trim();
+            String metric = parser.readHeader().trim();
+            String units = parser.readHeader().trim();
+            // the empty line and the column labels
+            parser.skipLine();
+            parser.skipLine();
+            if (pollutant.isEmpty() || year.isEmpty()){
+                System.out.println("No DEFRA header in " + file);
+                return null;
+            }
+            int dataStart = parser.getPosition();
+
+            long rows = compressed ? estimateRows(null, sample, dataStart, dataBytes)
+                                   : estimateRows(channel, sample, dataStart, bytes);
+            return new Entry(pollutant.toLowerCase(), year, metric, units, fileName(file), bytes, rows);
+        }
+        catch (IOException e) {
+            System.out.println("Could not read " + file);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the start of a file
+     * @param FileChannel channel the open file
+     * @param long bytes the size of the file
+     * @return ByteBuffer up to HEADER_SAMPLE_BYTES from the start of the file, ready to read
+     */
+    private static ByteBuffer readSample(FileChannel channel, long bytes) throws IOException
+    {
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(bytes, HEADER_SAMPLE_BYTES));
+        while (sample.hasRemaining() && channel.read(sample) >= 0){
+            // keep reading until the sample is full
+        }
+        sample.flip();
+        return sample;
+    }
+
+    /**
+     * Decompresses the start of a gzip compressed file
+     * @param Path file the file
+     * @return ByteBuffer up to HEADER_SAMPLE_BYTES of the csv data, ready to read
+     */
+    private static ByteBuffer readCompressedSample(Path file) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return ByteBuffer.wrap(in.readNBytes(HEADER_SAMPLE_BYTES));
+        }
+    }
+
+    /**
+     * Returns the size of the data in a gzip compressed file, which the last four bytes of
+     * the file hold (modulo 4GB, which no data file comes near)
+     * @param FileChannel channel the open file
+     * @return long the size of the csv data in bytes
+     */
+    private static long uncompressedSize(FileChannel channel) throws IOException
+    {
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = Math.max(0, channel.size() - Integer.BYTES);
+        while (trailer.hasRemaining() && channel.read(trailer, position + trailer.position()) >= 0){
+            // keep reading until the trailer is full
+        }
+        return trailer.hasRemaining() ? 0 : Integer.toUnsignedLong(trailer.getInt(0));
+    }
+
+    /**
+     * Estimates the number of rows of a file from the average length of the rows in samples
+     * from its start and its end. Grid codes and coordinates grow through a file, so rows
+     * near the end are longer than rows near the start. A compressed file cannot be read
+     * from the end, so only its start is sampled.
+     * @param FileChannel channel the open file, or null to sample only the start
+     * @param ByteBuffer sample the start of the file
+     * @param int dataStart index of the first row in the sample
+     * @param long bytes the size of the file, or of the csv data if it is compressed
+     * @return long the estimated number of rows
+     */
+    private static long estimateRows(FileChannel channel, ByteBuffer sample, int dataStart, long bytes)
+        throws IOException
+    {
+        int[] start = countLines(sample, dataStart);
+        if (sample.limit() == bytes){
+            // the whole file is in the sample; count a last row without a line break
+            return start[0] + (start[1] < bytes ? 1 : 0);
+        }
+
+        if (channel == null){
+            return start[0] == 0 ? 0 : Math.round((double) (bytes - dataStart) * start[0] / (start[1] - dataStart));
+        }
+        ByteBuffer tail = ByteBuffer.allocate((int) Math.min(bytes - sample.limit(), HEADER_SAMPLE_BYTES));
+        long tailStart = bytes - tail.capacity();
+        while (tail.hasRemaining() && channel.read(tail, tailStart + tail.position()) >= 0){
+            // keep reading until the sample is full
+        }
+        tail.flip();
+        // the tail sample starts part way through a row
+        int firstLineEnd = 0;
+        while (firstLineEnd < tail.limit() && tail.get(firstLineEnd) != '\n'){
+            firstLineEnd++;
+        }
+        int[] end = countLines(tail, firstLineEnd + 1);
+
+        int rows = start[0] + end[0];
+        if (rows == 0){
+            return 0;
+        }
+        double bytesPerRow = (double) (start[1] - dataStart + end[1] - firstLineEnd - 1) / rows;
+        return Math.round((bytes - dataStart) / bytesPerRow);
+    }
+
+    /**
+     * Counts the complete lines in a buffer from an index
+     * @return int[] the number of lines and the index just after the last of them
+     */
+    private static int[] countLines(ByteBuffer buffer, int from)
+    {
+        int lines = 0;
+        int lastLineEnd = from;
+        for (int i = from; i < buffer.limit(); i++){
+            if (buffer.get(i) == '\n'){
+                lines++;
+                lastLineEnd = i + 1;
+            }
+        }
+        return new int[]{lines, lastLineEnd};
+    }
+
+    /**
+     * Returns the name DataLoader loads a file in the data folder by
+     */
+    private String fileName(Path file)
+    {
+        StringBuilder name = new StringBuilder(folder);
+        for (Path part : root.relativize(file)){
+            name.append('/').append(part);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The test class DataCatalogTest contains unit tests for reading the headers of the data
+ * files in a folder. The files are written to a folder next to the compiled classes, where
+ * DataLoader looks for data.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class DataCatalogTest
+{
+    private String folder;
+    private Path root;
+
+    /**
+     * Default constructor for test class DataCatalogTest
+     */
+    public DataCatalogTest()
+    {
+    }
+
+    /**
+     * Creates an empty data folder.
+     */
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        Path classes = Path.of(DataCatalogTest.class.getResource("DataCatalogTest.class").toURI()).getParent();
+        folder = "DataCatalogTestData" + System.nanoTime();
+        root = Files.createDirectory(classes.resolve(folder));
+    }
+
+    /**
+     * Deletes the data folder.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Test method for the four header lines, trimmed and with the pollutant in lower case,
+     * with LF and CRLF line breaks.
+     */
+    @Test
+    public void testHeaderParsing() throws IOException
+    {
+        write(root.resolve("no2_2023.csv"), file("NO2", "2023", "annual mean", "ug m-3", 3, "\n"));
+        write(root.resolve("pm10.csv"), file(" PM10 ", " 2019 ", "annual mean", "ug m-3", 5, "\r\n"));
+        DataCatalog catalog = DataCatalog.scan(folder);
+
+        DataCatalog.Entry no2 = catalog.getEntry("2023", "no2");
+        assertNotNull(no2);
+        assertEquals("no2", no2.type());
+        assertEquals("2023", no2.year());
+        assertEquals("annual mean", no2.metric());
+        assertEquals("ug m-3", no2.units());
+        assertEquals(folder + "/no2_2023.csv", no2.fileName());
+        assertEquals(Files.size(root.resolve("no2_2023.csv")), no2.bytes());
+        assertEquals(3, no2.estimatedRows());
+
+        DataCatalog.Entry pm10 = catalog.getEntry("2019", "pm10");
+        assertNotNull(pm10);
+        assertEquals("pm10", pm10.type());
+        assertEquals("ug m-3", pm10.units());
+        assertEquals(5, pm10.estimatedRows());
+
+        assertEquals(List.of("2019", "2023"), catalog.getYears());
+        assertEquals(List.of("no2", "pm10"), catalog.getTypes());
+    }
+
+    /**
+     * Test method for which files are catalogued: files in folders inside the data folder are,
+     * files without a header, live data and compressed files with a plain copy are not.
+     */
+    @Test
+    public void testWhichFilesAreCatalogued() throws IOException
+    {
+        Files.createDirectory(root.resolve("2020"));
+        write(root.resolve("2020").resolve("pm25.csv"), file("PM2.5", "2020", "annual mean", "ug m-3", 2, "\n"));
+        write(root.resolve("empty.csv"), ",,,\n,,,\n".getBytes(StandardCharsets.US_ASCII));
+        write(root.resolve("live_no2.csv"), file("NO2", "2024", "annual mean", "ug m-3", 2, "\n"));
+        write(root.resolve("notes.txt"), file("NO2", "2021", "annual mean", "ug m-3", 2, "\n"));
+        byte[] pm10 = file("PM10", "2018", "annual mean", "ug m-3", 4, "\n");
+        write(root.resolve("pm10.csv"), pm10);
+        write(root.resolve("pm10.csv.gz"), gzip(pm10));
+        write(root.resolve("no2.csv.gz"), gzip(file("NO2", "2017", "annual mean", "ug m-3", 6, "\n")));
+        DataCatalog catalog = DataCatalog.scan(folder);
+
+        assertEquals(folder + "/2020/pm25.csv", catalog.getEntry("2020", "pm2.5").fileName());
+        assertEquals(folder + "/pm10.csv", catalog.getEntry("2018", "pm10").fileName());
+        DataCatalog.Entry compressed = catalog.getEntry("2017", "no2");
+        assertEquals(folder + "/no2.csv.gz", compressed.fileName());
+        assertEquals(6, compressed.estimatedRows());
+        assertNull(catalog.getEntry("2024", "no2"));
+        assertNull(catalog.getEntry("2021", "no2"));
+        assertEquals(3, catalog.getEntries().size());
+    }
+
+    /**
+     * Test method for the number of rows of a file too big to be read whole, estimated from
+     * samples of its start and end.
+     */
+    @Test
+    public void testEstimatedRowsOfLargeFile() throws IOException
+    {
+        write(root.resolve("no2.csv"), file("NO2", "2023", "annual mean", "ug m-3", 20000, "\n"));
+        write(root.resolve("pm10.csv.gz"), gzip(file("PM10", "2023", "annual mean", "ug m-3", 20000, "\n")));
+        DataCatalog catalog = DataCatalog.scan(folder);
+
+        assertEquals(20000, catalog.getEntry("2023", "no2").estimatedRows(), 1000);
+        assertEquals(20000, catalog.getEntry("2023", "pm10").estimatedRows(), 1000);
+    }
+
+    /**
+     * Returns the bytes of a DEFRA file with a header and some rows
+     */
+    private static byte[] file(String pollutant, String year, String metric, String units, int rows, String lineBreak)
+    {
+        StringBuilder text = new StringBuilder();
+        for (String line : new String[]{pollutant, year, metric, units}){
+            text.append(line).append(",,,").append(lineBreak);
+        }
+        text.append(",,,").append(lineBreak);
+        text.append("gridcode,x,y,value").append(lineBreak);
+        for (int i = 0; i < rows; i++){
+            text.append(100000 + i).append(',').append(1000000 + i).append(",500,")
+                .append(i % 2 == 0 ? "12.345" : "MISSING").append(lineBreak);
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Compresses bytes with gzip
+     */
+    private static byte[] gzip(byte[] bytes) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes bytes to a file
+     */
+    private static void write(Path file, byte[] bytes) throws IOException
+    {
+        Files.write(file, bytes);
+    }
+}
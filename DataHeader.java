@@ -0,0 +1,9 @@
+/**
+ * The information about the nature of the data held in the header of a DEFRA file.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public record DataHeader(String pollutant, String year, String metric, String units)
+{
+}
@@ -1,12 +1,24 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
 
 /**
  * This class loads a UK DEFRA air pollution file from disk and returns the file data
  * in an object. 
  * 
  * DEFRA files are csv files in a specific format. See https://uk-air.defra.gov.uk/data/pcm-data
- * for detailed information.
+ * for detailed information. Files compressed with gzip (ending in .csv.gz) are decompressed
+ * as they are read and parsed straight from the decompressed bytes.
  *
  * @author Michael Kölling
  * @version 1.0
@@ -14,6 +26,47 @@ import java.net.*;
 public class DataLoader
 {
     private static final String COMMA_DELIMITER = ",";
+    // bytes read from the file at a time when streaming; a line must fit in this
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String GZIP_EXTENSION = ".gz";
+    // files smaller than this are parsed faster on one thread
+    private static final long PARALLEL_MIN_BYTES = 4 * 1024 * 1024;
+
+    private boolean memoryMapped;
+    private boolean parallel;
+
+    /**
+     * Create a loader that reads files line by line.
+     */
+    public DataLoader()
+    {
+        this(false);
+    }
+
+    /**
+     * Create a loader.
+     *
+     * @param memoryMapped  true to memory-map files and parse the rows straight from
+     *                      their bytes, false to read them line by line
+     */
+    public DataLoader(boolean memoryMapped)
+    {
+        this(memoryMapped, false);
+    }
+
+    /**
+     * Create a loader that may parse a large file on several threads.
+     *
+     * @param memoryMapped  true to memory-map files and parse the rows straight from
+     *                      their bytes, false to read them line by line
+     * @param parallel  true to split memory-mapped files of PARALLEL_MIN_BYTES or more
+     *                  into chunks parsed at the same time (see ChunkedRowParser)
+     */
+    public DataLoader(boolean memoryMapped, boolean parallel)
+    {
+        this.memoryMapped = memoryMapped;
+        this.parallel = parallel;
+    }
  
     /** 
      * Read a data file from disk. The data must be a csv file, and must be in the
@@ -23,6 +76,12 @@ public class DataLoader
      */
     public DataSet loadDataFile(String fileName) 
     {
+        if (isCompressed(fileName)) {
+            return loadCompressedFile(fileName);
+        }
+        if (memoryMapped) {
+            return loadMappedFile(fileName);
+        }
         System.out.println("Loading file " + fileName + "...");
         
         URL url = getClass().getResource(fileName);
@@ -46,6 +105,7 @@ public class DataLoader
                 String[] values = line.split(COMMA_DELIMITER);
                 dataSet.addData(values);
             }
+            dataSet.trimToSize();
             System.out.println("Loading file... done.");
             return dataSet;
         }        
@@ -56,6 +116,223 @@ public class DataLoader
         }
     }
     
+    /**
+     * Read a data file by memory-mapping it and parsing the numbers straight from the
+     * mapped bytes. No Strings or arrays are created for the data rows, and unreadable
+     * values are stored as -1 just like in loadDataFile. A parallel loader hands the rows
+     * of a large file to ChunkedRowParser when there is more than one core to use.
+     * 
+     * @return A DataSet object holding the complete dataset, or null if the file could not be read
+     */
+    private DataSet loadMappedFile(String fileName)
+    {
+        System.out.println("Loading file " + fileName + "...");
+
+        Path path = resolvePath(fileName);
+        if (path == null) {
+            System.out.println("Could not read file " + fileName);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                // a single mapping cannot address more than 2GB
+                return new DataLoader(false).loadDataFile(fileName);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteRowParser parser = new ByteRowParser(buffer, 0, buffer.limit());
+
+            // the first four lines of the file hold special information; read them in:
+            String pollutant = parser.readHeader();
+            String year = parser.readHeader();
+            String metric = parser.readHeader();
+            String units = parser.readHeader();
+
+            // discard the empty line and the column labels
+            parser.skipLine();
+            parser.skipLine();
+
+            if (parallel && channel.size() >= PARALLEL_MIN_BYTES
+                    && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                DataHeader header = new DataHeader(pollutant, year, metric, units);
+                DataSet dataSet = ChunkedRowParser.parse(buffer, parser.getPosition(), buffer.limit(), header);
+                System.out.println("Loading file... done.");
+                return dataSet;
+            }
+            DataSet dataSet = new DataSet(pollutant, year, metric, units);
+            while (parser.nextRow()) {
+                dataSet.addData(parser.getGridCode(), parser.getX(), parser.getY(), parser.getValue());
+            }
+            dataSet.trimToSize();
+            System.out.println("Loading file... done.");
+            return dataSet;
+        }
+        catch(IOException e) {
+            System.out.println("Could not read file " + fileName);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Read a gzip compressed data file, decompressing it through the streaming parser into
+     * the columns of a dataset. Nothing is written to disk.
+     * 
+     * @return A DataSet object holding the complete dataset, or null if the file could not be read
+     */
+    private DataSet loadCompressedFile(String fileName)
+    {
+        System.out.println("Loading file " + fileName + "...");
+        // the header is only known once the first buffer has been parsed, so the rows are
+        // collected first and given their header afterwards
+        DataSet rows = new DataSet(null, null, null, null);
+        DataHeader header = streamDataFile(fileName, rows::addData);
+        if (header == null) {
+            return null;
+        }
+        rows.trimToSize();
+        System.out.println("Loading file... done.");
+        return new DataSet(header.pollutant(), header.year(), header.metric(), header.units(),
+                           rows.getGeometry(), rows.getValueColumn());
+    }
+
+    /**
+     * Read a data file from disk and pass each data row to a visitor as soon as it is
+     * parsed, instead of collecting the rows in a DataSet. The file is read through a
+     * small fixed-size buffer and nothing is kept, so files of any size can be processed
+     * in constant memory. A gzip compressed file is decompressed on the way.
+     * 
+     * @param fileName  The data file, in the DEFRA air pollution file format
+     * @param visitor  Receives every data row of the file, in file order
+     * @return The header of the file, or null if the file could not be read
+     */
+    public DataHeader streamDataFile(String fileName, RowVisitor visitor)
+    {
+        Path path = resolvePath(fileName);
+        if (path == null) {
+            System.out.println("Could not read file " + fileName);
+            return null;
+        }
+        try (ReadableByteChannel channel = openChannel(path)) {
+            return streamRows(channel, visitor);
+        }
+        catch(IOException e) {
+            System.out.println("Could not read file " + fileName);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Open a data file for reading, decompressing it if it is gzip compressed.
+     * 
+     * @return A channel giving the bytes of the csv data
+     */
+    private static ReadableByteChannel openChannel(Path path)
+        throws IOException
+    {
+        if (isCompressed(path.getFileName().toString())) {
+            return Channels.newChannel(new GZIPInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE));
+        }
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Return true if a data file is gzip compressed, which is told by its name.
+     */
+    public static boolean isCompressed(String fileName)
+    {
+        return fileName.endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Read the header and then the data rows from a channel, one buffer at a time. Only
+     * the complete lines in the buffer are parsed; a line cut off at the end of the buffer
+     * is moved to the front and finished by the next read.
+     * 
+     * @return The header of the data
+     */
+    private DataHeader streamRows(ReadableByteChannel channel, RowVisitor visitor)
+        throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        DataHeader header = null;
+        boolean endOfFile = false;
+        while (!endOfFile) {
+            endOfFile = fill(channel, buffer);
+            buffer.flip();
+            int end = endOfFile ? buffer.limit() : lineEnd(buffer);
+            if (end < 0) {
+                throw new IOException("Line longer than " + STREAM_BUFFER_SIZE + " bytes");
+            }
+            ByteRowParser parser = new ByteRowParser(buffer, 0, end);
+            if (header == null) {
+                // the first four lines of the file hold special information; read them in:
+                header = new DataHeader(parser.readHeader(), parser.readHeader(),
+                                        parser.readHeader(), parser.readHeader());
+                // discard the empty line and the column labels
+                parser.skipLine();
+                parser.skipLine();
+            }
+            while (parser.nextRow()) {
+                visitor.visit(parser.getGridCode(), parser.getX(), parser.getY(), parser.getValue());
+            }
+            buffer.position(end);
+            buffer.compact();
+        }
+        return header;
+    }
+
+    /**
+     * Read from a channel until the buffer is full or the channel has no more bytes.
+     * 
+     * @return true if the end of the channel was reached
+     */
+    private static boolean fill(ReadableByteChannel channel, ByteBuffer buffer)
+        throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the end of the last complete line in a buffer.
+     * 
+     * @return The index just after the last line break, or -1 if there is none
+     */
+    private static int lineEnd(ByteBuffer buffer)
+    {
+        for (int i = buffer.limit() - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find a data file on disk. Files are looked up as resources relative to this class,
+     * the same way loadDataFile finds them.
+     * 
+     * @return The path of the file, or null if there is no such file
+     */
+    public Path resolvePath(String fileName)
+    {
+        URL url = getClass().getResource(fileName);
+        if (url == null) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI());
+        }
+        catch(URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            return null;
+        }
+    }
+
     /**
      * Read one piece of information out of the header of the data file.
      * Each line in the header has the format
@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The test class DataLoaderTest checks that a gzip compressed data file is read, whole or
+ * streamed, exactly like its plain copy. The files are written to a folder next to the
+ * compiled classes, where DataLoader looks for data.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class DataLoaderTest
+{
+    // enough rows for the streaming buffer to be refilled many times
+    private static final int ROWS = 20000;
+
+    private String folder;
+    private Path root;
+
+    /**
+     * Default constructor for test class DataLoaderTest
+     */
+    public DataLoaderTest()
+    {
+    }
+
+    /**
+     * Writes a plain and a compressed copy of the same data file.
+     */
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        Path classes = Path.of(DataLoaderTest.class.getResource("DataLoaderTest.class").toURI()).getParent();
+        folder = "DataLoaderTestData" + System.nanoTime();
+        root = Files.createDirectory(classes.resolve(folder));
+
+        StringBuilder text = new StringBuilder("NO2,,,\r\n2023,,,\r\nannual mean,,,\r\nug m-3,,,\r\n,,,\r\n");
+        text.append("gridcode,x,y,no22023\r\n");
+        for (int i = 0; i < ROWS; i++){
+            text.append(100000 + i).append(',').append(500 + (i % 700) * 1000).append(',')
+                .append(500 + (i / 700) * 1000).append(',').append(i % 9 == 0 ? "MISSING" : String.valueOf(i / 8.0))
+                .append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        Files.write(root.resolve("no2.csv"), bytes);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(root.resolve("no2.csv.gz")))) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Deletes the data folder.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Test method for a compressed file loaded by every kind of loader giving the same
+     * dataset as the plain file read line by line.
+     */
+    @Test
+    public void testCompressedFileMatchesPlainFile()
+    {
+        DataSet expected = new DataLoader().loadDataFile(folder + "/no2.csv");
+        assertEquals(ROWS, expected.size());
+        assertEquals("NO2", expected.getPollutant());
+        assertEquals("ug m-3", expected.getUnits());
+
+        DataLoader[] loaders = {new DataLoader(), new DataLoader(true), new DataLoader(true, true)};
+        for (DataLoader loader : loaders){
+            assertSameRows(expected, loader.loadDataFile(folder + "/no2.csv.gz"));
+        }
+        assertSameRows(expected, new DataLoader(true).loadDataFile(folder + "/no2.csv"));
+    }
+
+    /**
+     * Test method for streaming the rows of a compressed file, which are visited in file
+     * order with the header returned at the end.
+     */
+    @Test
+    public void testStreamCompressedFile()
+    {
+        DataSet expected = new DataLoader().loadDataFile(folder + "/no2.csv");
+        int[] rows = new int[1];
+        DataHeader header = new DataLoader().streamDataFile(folder + "/no2.csv.gz", (gridCode, x, y, value) -> {
+            int i = rows[0]++;
+            assertEquals(expected.getGridCode(i), gridCode);
+            assertEquals(expected.getX(i), x);
+            assertEquals(expected.getY(i), y);
+            assertEquals(expected.getValue(i), value);
+        });
+        assertEquals(ROWS, rows[0]);
+        assertEquals(new DataHeader("NO2", "2023", "annual mean", "ug m-3"), header);
+    }
+
+    /**
+     * Test method for a compressed file that does not exist.
+     */
+    @Test
+    public void testMissingCompressedFile()
+    {
+        assertNull(new DataLoader().streamDataFile(folder + "/pm10.csv.gz", (gridCode, x, y, value) -> fail("no rows")));
+    }
+
+    /**
+     * Checks two datasets hold the same header and rows
+     */
+    private static void assertSameRows(DataSet expected, DataSet actual)
+    {
+        assertNotNull(actual);
+        assertEquals(expected.getPollutant(), actual.getPollutant());
+        assertEquals(expected.getYear(), actual.getYear());
+        assertEquals(expected.getMetric(), actual.getMetric());
+        assertEquals(expected.getUnits(), actual.getUnits());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++){
+            assertEquals(expected.getGridCode(i), actual.getGridCode(i), "row " + i);
+            assertEquals(expected.getX(i), actual.getX(i), "row " + i);
+            assertEquals(expected.getY(i), actual.getY(i), "row " + i);
+            assertEquals(expected.getValue(i), actual.getValue(i), "row " + i);
+        }
+    }
+}
@@ -1,93 +1,978 @@
-import java.util.HashMap;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 /**
- * Handles all datasets used within the program
+ * Handles all datasets used within the program.
+ *
+ * Datasets are loaded the first time they are asked for and kept in a bounded cache, so only
+ * the year and pollutant combinations that are used stay on the heap. Each type of data and
+ * year has a DataSource it is loaded from: the snapshot or csv file found by the catalog, the
+ * live data file, or any other source registered with registerSource.
+ *
+ * The sources, years and types are published as immutable RepositorySnapshot versions through
+ * a single atomic reference. Readers never lock; a reader that needs several datasets to agree
+ * with each other takes one snapshot and locates them all through it. Changes copy the current
+ * snapshot and publish the copy, one writer at a time.
+ *
+ * The cache entry of a source that has been replaced stays as long as a snapshot from before
+ * the replacement is still reachable, since a reader holding one may still ask for it. Once
+ * the last of those snapshots has been collected the entry is removed.
  * @author Ali Demir and Ozgur Dorunay
  * @version 24/03/25
  */
 public class DataRepository
 {
-    private HashMap<String, DataSet> no2Sets;
-    private HashMap<String, DataSet> pm10Sets;
-    private HashMap<String, DataSet> pm25Sets;
-    
+    private static final String DATA_FOLDER = "UKAirPollutionData";
+    // enough for every bundled dataset, least recently used ones are evicted beyond that
+    private static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+    // where the aggregate cube is kept between launches, inside the data folder
+    private static final String AGGREGATE_FILE = "aggregates.cube";
+    // tells the repositories when their snapshots are collected
+    private static final Cleaner SNAPSHOT_CLEANER = Cleaner.create();
+
+    private DataSetCache cache;
+    // the name of the data folder as passed to DataLoader
+    private String dataFolder;
+    private DataCatalog catalog;
+    // the current version of the sources, years and types
+    private AtomicReference<RepositorySnapshot> current;
+    // held while a new snapshot is published, so updates do not overwrite each other
+    private final Object publishLock = new Object();
+    private final VersionTracker versions;
+    private GridGeometryPool geometries;
+    private ExecutorService loaderPool;
+    private boolean snapshotsEnabled;
+    private boolean quantizedStorage;
+    private OffHeapArena offHeapArena;
+    // the cell cube and the snapshot version it was built from, read without locking when hovering
+    private volatile BuiltCube cube;
+    private List<Region> aggregateRegions;
+    private AggregateCube aggregates;
+    // the source versions the aggregate cube was built from, see sourceStamp
+    private String aggregatesStamp;
+    private CompletableFuture<AggregateCube> pendingAggregates;
+    private String pendingStamp;
+    private List<BiConsumer<String, String>> changeListeners;
+
     /**
-     * Constructor for objects of class dataRepository
+     * Constructor for objects of class dataRepository. Datasets are loaded on demand into a
+     * cache with the default size limit.
      */
     public DataRepository()
     {
-        no2Sets = new HashMap<>();
-        pm10Sets = new HashMap<>();
-        pm25Sets = new HashMap<>();
-        createDataSets();
+        this(DataSetCache.ofBytes(DEFAULT_CACHE_BYTES));
+    }
+
+    /**
+     * Constructor for objects of class dataRepository. Every dataset is loaded up front into
+     * a cache which never evicts.
+     * @param boolean parallelLoading true to parse the data files at the same time on a worker pool,
+     *        false to parse them one after another on the calling thread
+     */
+    public DataRepository(boolean parallelLoading)
+    {
+        this(DataSetCache.unbounded());
+        createDataSets(parallelLoading);
+    }
+
+    /**
+     * Constructor for objects of class dataRepository. Datasets are loaded on demand into the given cache.
+     * @param DataSetCache cache the cache holding loaded datasets, which decides how many stay loaded
+     */
+    public DataRepository(DataSetCache cache)
+    {
+        this(cache, DATA_FOLDER);
+    }
+
+    /**
+     * Constructor for objects of class dataRepository. Datasets are catalogued from another data
+     * folder and loaded on demand into the given cache.
+     * @param DataSetCache cache the cache holding loaded datasets, which decides how many stay loaded
+     * @param String dataFolder the name of the data folder as passed to DataLoader
+     */
+    DataRepository(DataSetCache cache, String dataFolder)
+    {
+        this.cache = cache;
+        this.dataFolder = dataFolder;
+        this.catalog = DataCatalog.scan(dataFolder);
+        this.geometries = new GridGeometryPool();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.snapshotsEnabled = true;
+        this.aggregateRegions = List.of();
+        Map<String, DataSource> sources = fileSources();
+        for (String type : catalog.getTypes()){
+            sources.put(key("live", type), new LiveDataSource(dataFolder, type));
+        }
+        this.versions = new VersionTracker(cache);
+        RepositorySnapshot first = RepositorySnapshot.create(this, sources, catalog);
+        this.current = new AtomicReference<>(first);
+        versions.track(first);
+    }
+
+    /**
+     * Returns the current snapshot of the repository. It does not change, so datasets located
+     * through it agree with each other even if files are reloaded in the meantime.
+     * @return RepositorySnapshot the snapshot
+     */
+    public RepositorySnapshot snapshot()
+    {
+        return current.get();
+    }
+
+    /**
+     * Sets whether datasets are read from and written to binary snapshots next to their csv files.
+     * With snapshots a csv file is parsed once and later loads map the snapshot instead. The
+     * sources of the files in the catalog are registered again, replacing any registered for
+     * the same year and type.
+     * @param boolean enabled true to use snapshots, false to always parse the csv files
+     */
+    public void setSnapshotsEnabled(boolean enabled)
+    {
+        this.snapshotsEnabled = enabled;
+        publish(fileSources());
+    }
+
+    /**
+     * Registers the source a year and type of data is loaded from, replacing the one there was,
+     * and publishes a new snapshot. The dataset is loaded from the new source the next time it
+     * is asked for; older snapshots keep the old source.
+     * @param String year the year, or "live"
+     * @param String type the type of data
+     * @param DataSource source the source
+     */
+    public void registerSource(String year, String type, DataSource source)
+    {
+        publish(Map.of(key(year, type.toLowerCase().trim()), source));
+    }
+
+    /**
+     * Returns the source a year and type of data is loaded from in the current snapshot
+     * @param String year the year, or "live"
+     * @param String type the type of data
+     * @return DataSource the source, or null if none is registered
+     */
+    public DataSource getSource(String year, String type)
+    {
+        RepositorySnapshot.Source source = snapshot().getSource(key(year, type.toLowerCase().trim()));
+        return source == null ? null : source.source();
+    }
+
+    /**
+     * Sets whether datasets loaded from now on keep their values as 16-bit fixed-point codes
+     * instead of doubles. Quantized datasets take less memory, so more of them fit in the cache,
+     * but their values may be off by up to the maximum error of the encoding.
+     * @param boolean enabled true to quantize the values of loaded datasets
+     */
+    public void setQuantizedStorage(boolean enabled)
+    {
+        this.quantizedStorage = enabled;
+    }
+
+    /**
+     * Sets whether datasets loaded from now on keep their values off the Java heap, so the
+     * garbage collector does not have to deal with them. The memory of an off-heap dataset is
+     * given back once the cache has evicted it, or a reload has replaced it, and every reader
+     * that acquired it has released it, so a reader must go through acquireSet.
+     * @param boolean enabled true to store the values of loaded datasets off the heap
+     */
+    public void setOffHeapStorage(boolean enabled)
+    {
+        if (enabled && offHeapArena == null){
+            offHeapArena = new OffHeapArena();
+        }
+        else if (!enabled && offHeapArena != null){
+            // datasets already off the heap keep their columns until they are removed
+            offHeapArena = null;
+        }
+    }
+
+    /**
+     * Returns the arena off-heap datasets are allocated from
+     * @return OffHeapArena the arena, or null if off-heap storage is not enabled
+     */
+    public OffHeapArena getOffHeapArena()
+    {
+        return offHeapArena;
     }
-    
+
     /**
-     * Locates a dataset from the year and type
+     * Locates a dataset of the current snapshot from the year and type, loading it if it is not loaded yet
      * @param String year the year where data is concerned
-     * @param String type1 the type of data 
-     * @return DataSet the dataset concerned 
+     * @param String type1 the type of data
+     * @return DataSet the dataset concerned
      */
     public DataSet locateSet(String year , String type1)
     {
-        String type = type1.toLowerCase().trim();
-        if (type.equals("no2")){
-            return no2Sets.get(year);
+        return snapshot().locateSet(year, type1);
+    }
+
+    /**
+     * Locates a dataset of the current snapshot as locateSet does and acquires it, so that it stays
+     * readable however long it is read for. The caller must release it once done.
+     * @param String year the year where data is concerned
+     * @param String type the type of data
+     * @return DataSet the acquired dataset, or null if there is none
+     */
+    public DataSet acquireSet(String year, String type)
+    {
+        return snapshot().acquireSet(year, type);
+    }
+
+    /**
+     * Starts locating a dataset of the current snapshot on the loader pool and returns straight
+     * away. Cancelling the future before the pool has started on it stops the dataset from being loaded.
+     * @param String year the year where data is concerned
+     * @param String type the type of data
+     * @return CompletableFuture<DataSet> completes with the dataset, or with null if there is none
+     */
+    public CompletableFuture<DataSet> loadAsync(String year, String type)
+    {
+        RepositorySnapshot pinned = snapshot();
+        return CompletableFuture.supplyAsync(() -> pinned.locateSet(year, type), getLoaderPool());
+    }
+
+    /**
+     * Loads the datasets for every combination of the given years and types which are not loaded yet.
+     * The files are parsed at the same time on the loader pool and this waits for all of them.
+     * @param List<String> years the years to load
+     * @param String... types the types of data to load
+     */
+    public void prefetch(List<String> years, String... types)
+    {
+        snapshot().prefetch(years, types);
+    }
+
+    /**
+     * Starts loading every dataset in the background and returns straight away. The dataset for
+     * the given year and type is loaded first, then the other years of that type and then the
+     * other types, nearest year first. A dataset asked for through locateSet before
+     * its turn is loaded at once, and one that is already loading is waited for.
+     * @param String year the year of the dataset shown first
+     * @param String type the type of the dataset shown first
+     * @param BiConsumer<Integer, Integer> progress called with the number of datasets finished and the
+     *        total, once before loading starts and then on a loader thread after each dataset
+     * @return CompletableFuture<Void> completes once every dataset has been loaded
+     */
+    public CompletableFuture<Void> loadInBackground(String year, String type, BiConsumer<Integer, Integer> progress)
+    {
+        List<String[]> sets = catalogedSets();
+        String firstType = type.toLowerCase().trim();
+        int firstYear = yearNumber(year);
+        // the pool starts tasks in the order they are submitted
+        sets.sort(Comparator.<String[]>comparingInt(set -> set[1].equals(firstType) ? 0 : 1)
+                            .thenComparingInt(set -> Math.abs(yearNumber(set[0]) - firstYear)));
+
+        int total = sets.size();
+        AtomicInteger loaded = new AtomicInteger();
+        progress.accept(0, total);
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[total];
+        for (int i = 0; i < total; i++){
+            String[] set = sets.get(i);
+            pending[i] = loadAsync(set[0], set[1]).thenRun(() -> progress.accept(loaded.incrementAndGet(), total));
+        }
+        return CompletableFuture.allOf(pending);
+    }
+
+    /**
+     * Starts watching the data folder for csv files that are rewritten while the program runs,
+     * reloading each one into the repository once it has been written
+     * @return DataWatcher the running watcher, or null if the data folder could not be watched
+     */
+    public DataWatcher watchForChanges()
+    {
+        Path root = new DataLoader().resolvePath(dataFolder);
+        if (root == null){
+            System.out.println("Could not find " + dataFolder);
+            return null;
+        }
+        return DataWatcher.start(this, root);
+    }
+
+    /**
+     * Adds a listener which is told the year and type of each dataset whose file has been reloaded.
+     * Listeners are called on a background thread.
+     * @param BiConsumer<String, String> listener called with the year and the type of data
+     */
+    public void addChangeListener(BiConsumer<String, String> listener)
+    {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Reloads the dataset held in a csv file which has changed. A loaded dataset is parsed again
+     * and the new one replaces it in a single step, so callers of locateSet get either the old or
+     * the new dataset, never a partly loaded one. A dataset that is not loaded is read from the new
+     * file the next time it is asked for. A new data file is added to the catalog. Change listeners
+     * are then told about the dataset.
+     * @param Path file the csv file which changed
+     */
+    public void reloadFile(Path file)
+    {
+        Path changed = file.toAbsolutePath().normalize();
+        DataLoader loader = new DataLoader();
+        for (String type : getTypes()){
+            DataSource live = getSource("live", type);
+            Path path = live == null ? null : loader.resolvePath(live.getName());
+            if (path != null && path.toAbsolutePath().normalize().equals(changed)){
+                reload("live", type, live, false);
+                return;
+            }
+        }
+        // reading the header again also picks up files that are new
+        DataCatalog.Entry entry = catalog.add(changed);
+        if (entry != null){
+            reload(entry.year(), entry.type(), fileSource(entry), false);
+        }
+    }
+
+    /**
+     * Reloads a dataset as replace does, then tells the change listeners about it
+     */
+    private void reload(String year, String type, DataSource source, boolean loadNow)
+    {
+        if (replace(year, type, source, loadNow)){
+            for (BiConsumer<String, String> listener : changeListeners){
+                listener.accept(year, type);
+            }
+        }
+    }
+
+    /**
+     * Publishes a snapshot in which a dataset has a new version of its source. If the old version
+     * of the dataset was loaded, or loadNow is true, the new one is loaded first and is in the
+     * cache by the time the snapshot is published.
+     * @param String year the year
+     * @param String type the type of data
+     * @param DataSource source the source to load from, which may be the same as before
+     * @param boolean loadNow true to load the dataset even if the old version was not loaded
+     * @return boolean false if the dataset could not be loaded, in which case nothing changes
+     */
+    private boolean replace(String year, String type, DataSource source, boolean loadNow)
+    {
+        String key = key(year, type);
+        RepositorySnapshot.Source old = snapshot().getSource(key);
+        DataSet dataSet = null;
+        if (loadNow || (old != null && isLoaded(key, old))){
+            String fingerprint = source.getFingerprint();
+            dataSet = loadFrom(source);
+            if (dataSet == null){
+                // keep the old data rather than lose it to a file that is still being written
+                return false;
+            }
+            if (fingerprint != null && !fingerprint.equals(source.getFingerprint())){
+                // written to again while it was read; the watcher reloads it once it settles
+                dataSet.release();
+                return false;
+            }
+        }
+        synchronized (publishLock){
+            RepositorySnapshot next = snapshot().withSources(Map.of(key, source), catalog);
+            if (dataSet != null){
+                cache.put(cacheKey(key, next.getSource(key)), dataSet);
+            }
+            install(next, List.of(key));
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a snapshot in which some sources are replaced
+     * @param Map<String, DataSource> changed the new sources by type/year
+     */
+    private void publish(Map<String, DataSource> changed)
+    {
+        synchronized (publishLock){
+            install(snapshot().withSources(changed, catalog), changed.keySet());
+        }
+    }
+
+    /**
+     * Makes a snapshot the current one and hands the cache entries of the sources it replaced
+     * to the version tracker, which removes them once no older snapshot is left. Called while
+     * holding the publish lock.
+     * @param RepositorySnapshot next the new snapshot
+     * @param Collection<String> changed the keys whose sources it replaced
+     */
+    private void install(RepositorySnapshot next, Collection<String> changed)
+    {
+        RepositorySnapshot previous = snapshot();
+        current.set(next);
+        versions.track(next);
+        for (String key : changed){
+            RepositorySnapshot.Source old = previous.getSource(key);
+            if (old != null){
+                versions.supersede(cacheKey(key, old), next.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Returns the cube holding every pollutant and year of every grid cell, building it the
+     * first time it is asked for and again once a newer snapshot has been published. Building
+     * loads any datasets that are not loaded yet.
+     * @return PollutionCube the cube, or null if no dataset could be loaded
+     */
+    public synchronized PollutionCube getCube()
+    {
+        RepositorySnapshot pinned = snapshot();
+        if (cube == null || cube.version() != pinned.getVersion()){
+            List<String> types = pinned.getTypes();
+            pinned.prefetch(pinned.getYears(), types.toArray(new String[0]));
+            // every dataset is held until the cube has copied its values
+            List<DataSet> held = new ArrayList<>();
+            try {
+                cube = new BuiltCube(PollutionCube.build(pinned.getYears(), types, (year, type) -> {
+                    DataSet dataSet = pinned.acquireSet(year, type);
+                    if (dataSet != null){
+                        held.add(dataSet);
+                    }
+                    return dataSet;
+                }), pinned.getVersion());
+            }
+            finally {
+                for (DataSet dataSet : held){
+                    dataSet.release();
+                }
+            }
+        }
+        return cube.cube();
+    }
+
+    /**
+     * Returns the cube holding every pollutant and year of every grid cell if it has been built
+     * for the current snapshot, without building it or waiting for a build to finish. Cheap
+     * enough to call on every mouse move.
+     * @return PollutionCube the cube, or null if it is not built for the current data yet
+     */
+    public PollutionCube peekCube()
+    {
+        BuiltCube built = cube;
+        if (built == null || built.version() != snapshot().getVersion()){
+            return null;
+        }
+        return built.cube();
+    }
+
+    /**
+     * Sets the regions the aggregate cube holds totals for. A cube built for other regions is dropped.
+     * @param List<Region> regions the regions
+     */
+    public synchronized void setAggregateRegions(List<Region> regions)
+    {
+        aggregateRegions = List.copyOf(regions);
+        aggregates = null;
+        aggregatesStamp = null;
+        pendingAggregates = null;
+        pendingStamp = null;
+    }
+
+    /**
+     * Starts building the aggregate cube of the current snapshot for the regions set with
+     * setAggregateRegions, and returns straight away. The cube is read from the data folder if
+     * one was stored there for the same data and regions. Otherwise the datasets are loaded and
+     * aggregated on the loader pool, a few at a time, and the cube is stored for the next launch.
+     * A build that fails is not kept, so the next call starts another one.
+     * @return CompletableFuture<AggregateCube> completes with the cube, or exceptionally if it could not be built
+     */
+    public synchronized CompletableFuture<AggregateCube> buildAggregateCube()
+    {
+        RepositorySnapshot pinned = snapshot();
+        String stamp = sourceStamp(pinned);
+        if (aggregates != null && stamp.equals(aggregatesStamp)){
+            return CompletableFuture.completedFuture(aggregates);
+        }
+        if (pendingAggregates != null && stamp.equals(pendingStamp)){
+            return pendingAggregates;
+        }
+        List<Region> regions = aggregateRegions;
+        CompletableFuture<AggregateCube> pending = new CompletableFuture<>();
+        pendingAggregates = pending;
+        pendingStamp = stamp;
+        CompletableFuture.supplyAsync(() -> loadAggregateCube(pinned, regions)).whenComplete((cube, failure) -> {
+            synchronized (this){
+                // a cube for newer data or other regions may have been asked for meanwhile
+                if (pendingAggregates == pending){
+                    if (failure == null){
+                        aggregates = cube;
+                        aggregatesStamp = stamp;
+                    }
+                    pendingAggregates = null;
+                    pendingStamp = null;
+                }
+            }
+            // completed only now, so whoever waits for it finds the cube stored
+            if (failure == null){
+                pending.complete(cube);
+            }
+            else{
+                System.out.println("Could not build aggregate cube");
+                failure.printStackTrace();
+                pending.completeExceptionally(failure);
+            }
+        });
+        return pending;
+    }
+
+    /**
+     * Returns the aggregate cube if it has been built from the same datasets as a snapshot. If it
+     * has not, and the snapshot is the current one, a new cube is started in the background and
+     * the caller works the totals out from the datasets in the meantime.
+     * @param RepositorySnapshot pinned the snapshot the caller reads its datasets from
+     * @return AggregateCube the cube, or null if there is none for the snapshot yet
+     */
+    public synchronized AggregateCube getAggregateCube(RepositorySnapshot pinned)
+    {
+        if (aggregateRegions.isEmpty()){
+            return null;
+        }
+        if (aggregates != null && sourceStamp(pinned).equals(aggregatesStamp)){
+            return aggregates;
+        }
+        if (pinned == snapshot()){
+            buildAggregateCube();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the aggregate cube of a snapshot from the data folder, or builds and stores it
+     */
+    private AggregateCube loadAggregateCube(RepositorySnapshot pinned, List<Region> regions)
+    {
+        String fingerprint = aggregateFingerprint(pinned, regions);
+        Path root = new DataLoader().resolvePath(dataFolder);
+        Path file = root == null ? null : root.resolve(AGGREGATE_FILE);
+        if (fingerprint != null && file != null){
+            AggregateCube stored = AggregateCube.read(file, fingerprint);
+            if (stored != null){
+                return stored;
+            }
+        }
+        long start = System.nanoTime();
+        AggregateCube cube = AggregateCube.build(pinned, regions, getLoaderPool());
+        System.out.println("Built aggregate cube in " + elapsedMillis(start) + " ms");
+        if (fingerprint != null && file != null){
+            cube.write(file, fingerprint);
+        }
+        return cube;
+    }
+
+    /**
+     * Returns the version of the source of every year and type of a snapshot, which is the same
+     * for two snapshots exactly when they have the same datasets for those years and types
+     * @param RepositorySnapshot pinned the snapshot
+     * @return String the versions
+     */
+    private static String sourceStamp(RepositorySnapshot pinned)
+    {
+        StringBuilder stamp = new StringBuilder();
+        for (String type : pinned.getTypes()){
+            for (String year : pinned.getYears()){
+                RepositorySnapshot.Source source = pinned.getSource(key(year, type));
+                stamp.append(source == null ? 0 : source.version()).append(',');
+            }
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Returns the fingerprint of the data and regions of an aggregate cube, from the regions'
+     * boundaries and the fingerprint of every source
+     * @return String the fingerprint, or null if a source has none and the cube cannot be stored
+     */
+    private String aggregateFingerprint(RepositorySnapshot pinned, List<Region> regions)
+    {
+        StringBuilder fingerprint = new StringBuilder(quantizedStorage ? "quantized" : "exact");
+        for (Region region : regions){
+            fingerprint.append(';').append(new Statistics(region).getRegionKey());
         }
-        else if(type.equals("pm10")){
-            return pm10Sets.get(year);
+        for (String type : pinned.getTypes()){
+            for (String year : pinned.getYears()){
+                RepositorySnapshot.Source source = pinned.getSource(key(year, type));
+                if (source == null){
+                    fingerprint.append(";-");
+                    continue;
+                }
+                // the data the snapshot's datasets were loaded from, not whatever is there now
+                String sourceFingerprint = source.fingerprint();
+                if (sourceFingerprint == null){
+                    return null;
+                }
+                fingerprint.append(';').append(sourceFingerprint);
+            }
         }
-        else if(type.equals("pm2.5")){
-            return pm25Sets.get(year);
+        return fingerprint.toString();
+    }
+
+    /**
+     * Returns the years there is data for, of any type
+     * @return List<String> years in ascending order
+     */
+    public List<String> getYears()
+    {
+        return snapshot().getYears();
+    }
+
+    /**
+     * Returns the years there is data for of one type
+     * @param String type the type of data
+     * @return List<String> years in ascending order
+     */
+    public List<String> getYears(String type)
+    {
+        return snapshot().getYears(type);
+    }
+
+    /**
+     * Returns the types of data there are files for
+     * @return List<String> lower case types in alphabetical order
+     */
+    public List<String> getTypes()
+    {
+        return snapshot().getTypes();
+    }
+
+    /**
+     * Returns the catalog of data files the repository loads from
+     * @return DataCatalog the catalog
+     */
+    public DataCatalog getCatalog()
+    {
+        return catalog;
+    }
+
+    /**
+     * Creates dataSets from csv files using data loader and puts them in the cache under their corresponding year
+     * @param boolean parallel true to load the files on the loader pool
+     */
+    private void createDataSets(boolean parallel)
+    {
+        List<String[]> sets = catalogedSets();
+
+        long start = System.nanoTime();
+        if (parallel){
+            loadInParallel(snapshot(), sets);
         }
         else{
+            for (String[] set : sets){
+                locateSet(set[0], set[1]);
+            }
+        }
+        System.out.println("Loaded " + sets.size() + " files in " + elapsedMillis(start) + " ms");
+    }
+
+    /**
+     * Returns the year and type of every file in the catalog
+     * @return List<String[]> year and type pairs
+     */
+    private List<String[]> catalogedSets()
+    {
+        List<String[]> sets = new ArrayList<>();
+        for (DataCatalog.Entry entry : catalog.getEntries()){
+            sets.add(new String[]{entry.year(), entry.type()});
+        }
+        return sets;
+    }
+
+    /**
+     * Loads the given year and type pairs of a snapshot at the same time on a bounded worker pool
+     * and waits for all of them to finish
+     * @param RepositorySnapshot snapshot the snapshot to load the datasets of
+     * @param List<String[]> sets year and type pairs to load
+     */
+    void loadInParallel(RepositorySnapshot snapshot, List<String[]> sets)
+    {
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (String[] set : sets){
+                pending.add(getLoaderPool().submit(() -> snapshot.locateSet(set[0], set[1])));
+            }
+            for (Future<?> future : pending){
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            System.out.println("Could not load data files");
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the pool used to load files in parallel, creating it on first use
+     * @return ExecutorService the pool
+     */
+    private synchronized ExecutorService getLoaderPool()
+    {
+        if (loaderPool == null){
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), Math.max(1, catalog.getEntries().size()));
+            loaderPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "DataRepository-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return loaderPool;
+    }
+
+    /**
+     * Returns the sources of every file in the catalog
+     * @return Map<String, DataSource> the sources by type/year
+     */
+    private Map<String, DataSource> fileSources()
+    {
+        Map<String, DataSource> sources = new HashMap<>();
+        for (DataCatalog.Entry entry : catalog.getEntries()){
+            sources.put(key(entry.year(), entry.type()), fileSource(entry));
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the source of a file in the catalog: its snapshot if snapshots are enabled,
+     * otherwise the csv file itself
+     * @param DataCatalog.Entry entry the file
+     * @return DataSource the source
+     */
+    private DataSource fileSource(DataCatalog.Entry entry)
+    {
+        CsvDataSource csv = new CsvDataSource(entry.fileName());
+        return snapshotsEnabled ? new SnapshotDataSource(csv) : csv;
+    }
+
+    /**
+     * Locates the dataset of a version of a source, loading it into the cache if it is not loaded yet
+     * @param String key the key of the dataset in the form type/year
+     * @param RepositorySnapshot.Source source the source and its version
+     * @return DataSet the dataset, or null if it could not be loaded
+     */
+    DataSet locate(String key, RepositorySnapshot.Source source)
+    {
+        return cache.get(cacheKey(key, source), cached -> loadVersion(key, source));
+    }
+
+    /**
+     * Locates the dataset of a version of a source as locate does and acquires it for the caller
+     * @param String key the key of the dataset in the form type/year
+     * @param RepositorySnapshot.Source source the source and its version
+     * @return DataSet the acquired dataset, or null if it could not be loaded
+     */
+    DataSet acquire(String key, RepositorySnapshot.Source source)
+    {
+        return cache.acquire(cacheKey(key, source), cached -> loadVersion(key, source));
+    }
+
+    /**
+     * Returns true if the dataset of a version of a source is in the cache
+     * @param String key the key of the dataset in the form type/year
+     * @param RepositorySnapshot.Source source the source and its version
+     * @return boolean true or false
+     */
+    boolean isLoaded(String key, RepositorySnapshot.Source source)
+    {
+        return cache.isLoaded(cacheKey(key, source));
+    }
+
+    /**
+     * Loads the dataset of a version of a source, as long as the source still holds the data it
+     * had when that version was registered. Otherwise the version can no longer be loaded: the
+     * file has been rewritten, and the new data belongs to a newer snapshot.
+     * @param String key the key of the dataset in the form type/year
+     * @param RepositorySnapshot.Source source the source and its version
+     * @return DataSet the loaded dataset, or null if it could not be loaded or its data has changed
+     */
+    private DataSet loadVersion(String key, RepositorySnapshot.Source source)
+    {
+        if (!source.isUnchanged()){
+            System.out.println("The data of " + key + " has changed since version " + source.version());
             return null;
         }
+        DataSet dataSet = loadFrom(source.source());
+        // the file may have been rewritten while it was read
+        if (dataSet != null && !source.isUnchanged()){
+            System.out.println("The data of " + key + " has changed since version " + source.version());
+            dataSet.release();
+            return null;
+        }
+        return dataSet;
     }
-    
+
     /**
-     * Creates dataSets from csv files using data loader and puts them in a hashmap accesible by their corresponding year 
+     * Loads a dataset from a source on the calling thread
+     * @param DataSource source the source
+     * @return DataSet the loaded dataset, or null if it could not be loaded
      */
-    private void createDataSets()
+    private DataSet loadFrom(DataSource source)
     {
-        DataLoader loader = new DataLoader();
-        
-        for (int i = 0; i < 6; i++){
-            DataSet no2Set = loader.loadDataFile("UKAirPollutionData/NO2/mapno220" + (18 + i) +  ".csv");
-            no2Sets.put("" + (2018 + i) + "", no2Set);
+        DataSet dataSet = source.load(Runnable::run).join();
+        if (dataSet == null){
+            return null;
         }
-        
-        for (int i = 0; i<6 ; i++){
-            DataSet pm25Set = loader.loadDataFile("UKAirPollutionData/pm2.5/mappm2520" + (18 + i) + "g.csv");
-            pm25Sets.put("" + (2018 + i) + "", pm25Set);
+        // files covering the same grid share one copy of the coordinates
+        geometries.share(dataSet);
+        if (quantizedStorage){
+            dataSet.quantize();
+        }
+        else if (offHeapArena != null){
+            dataSet.moveOffHeap(offHeapArena);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Returns the key of a dataset for a year and type
+     * @param String year the year
+     * @param String type the type of data
+     * @return String the key
+     */
+    static String key(String year, String type)
+    {
+        return type + "/" + year;
+    }
+
+    /**
+     * Returns the cache key of a version of a dataset
+     * @param String key the key of the dataset in the form type/year
+     * @param RepositorySnapshot.Source source the source and its version
+     * @return String the cache key in the form type/year@version
+     */
+    private static String cacheKey(String key, RepositorySnapshot.Source source)
+    {
+        return key + "@" + source.version();
+    }
+
+    /**
+     * Returns a year as a number, for ordering years by how close they are
+     * @param String year the year
+     * @return int the year, or 0 if it is not a number
+     */
+    private static int yearNumber(String year)
+    {
+        try {
+            return Integer.parseInt(year.trim());
         }
-        
-        for(int i = 0; i<6;i++){
-            DataSet pm10Set = loader.loadDataFile("UKAirPollutionData/pm10/mappm1020" + (18 + i) + "g.csv");
-            pm10Sets.put("" + (2018 + i) + "", pm10Set);
+        catch (NumberFormatException e) {
+            return 0;
         }
     }
-    
+
+    /**
+     * Returns the milliseconds passed since the given time
+     * @param long start time from System.nanoTime()
+     * @return long elapsed milliseconds
+     */
+    private static long elapsedMillis(long start)
+    {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
      /**
      * Loads live data from the CSV file into the repository
      * @param type The type of pollution data (no2, pm10, pm2.5)
      */
     public void loadLiveData(String type) {
-        DataLoader loader = new DataLoader();
-        DataSet liveDataSet;
+        // Reload the live data under the "live" year, since the file has been rewritten
+        DataSource live = getSource("live", type);
+        if (live == null) {
+            return;
+        }
+        replace("live", type, live, true);
+    }
+
+    /**
+     * Keeps track of which snapshot versions are still reachable, and removes the cache entry
+     * of each replaced source once no snapshot that could ask for it is left. It holds no
+     * snapshots itself, so that they can be collected.
+     */
+    private static class VersionTracker
+    {
+        private final DataSetCache cache;
+        // versions of the snapshots not collected yet
+        private final TreeSet<Long> live;
+        // cache keys of replaced sources, by the version of the snapshot that replaced them
+        private final Map<String, Long> superseded;
 
-        // The live data will be saved to a specific filename by LiveDataCSVWriter
-        String filename = "UKAirPollutionData/" + type + "/map" + type + "live.csv";
-        liveDataSet = loader.loadDataFile(filename);
+        /**
+         * Constructor for objects of class VersionTracker
+         * @param DataSetCache cache the cache the entries are removed from
+         */
+        VersionTracker(DataSetCache cache)
+        {
+            this.cache = cache;
+            this.live = new TreeSet<>();
+            this.superseded = new HashMap<>();
+        }
+
+        /**
+         * Starts tracking a snapshot, until it is collected
+         * @param RepositorySnapshot snapshot the snapshot
+         */
+        synchronized void track(RepositorySnapshot snapshot)
+        {
+            long version = snapshot.getVersion();
+            live.add(version);
+            // the action must not hold the snapshot, or it would never be collected
+            SNAPSHOT_CLEANER.register(snapshot, () -> collected(version));
+        }
 
-        // Add the dataset to the appropriate map with "live" as the key
-        if (type.equals("no2")) {
-            no2Sets.put("live", liveDataSet);
-        } else if (type.equals("pm10")) {
-            pm10Sets.put("live", liveDataSet);
-        } else if (type.equals("pm2.5")) {
-            pm25Sets.put("live", liveDataSet);
+        /**
+         * Records that the source cached under a key was replaced in a version
+         * @param String cacheKey the cache key of the replaced source
+         * @param long version the version of the snapshot that replaced it
+         */
+        synchronized void supersede(String cacheKey, long version)
+        {
+            superseded.put(cacheKey, version);
+            retire();
         }
+
+        /**
+         * Stops tracking a snapshot which has been collected
+         */
+        private synchronized void collected(long version)
+        {
+            live.remove(version);
+            retire();
+        }
+
+        /**
+         * Removes the entries that only snapshots older than every reachable one could ask for
+         */
+        private void retire()
+        {
+            long oldest = live.isEmpty() ? Long.MAX_VALUE : live.first();
+            superseded.entrySet().removeIf(entry -> {
+                if (entry.getValue() > oldest){
+                    return false;
+                }
+                cache.invalidate(entry.getKey());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * A cell cube and the version of the snapshot it was built from
+     */
+    private record BuiltCube(PollutionCube cube, long version)
+    {
     }
 }
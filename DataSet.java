@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A DataSet object holds all the data from a pollution data file.
@@ -7,19 +8,39 @@ import java.util.*;
  * https://uk-air.defra.gov.uk/data/pcm-data). 
  * 
  * The data consists of a few bits of information about the nature of the data, and a list
- * of data points.
+ * of data points. The data points are stored in columns of primitives rather than as one
+ * object per point. The gridcode, x and y columns live in a GridGeometry, which datasets
+ * covering the same grid share; each dataset holds only its own value column. DataPoint
+ * objects are only created when a caller asks for them through getData() or getDataPoint().
+ * 
+ * Once loaded, the value column can be quantized into 16-bit codes to save memory; see
+ * QuantizedValues for the encoding and the error it introduces. It can instead be moved
+ * off the Java heap into an OffHeapColumn. Its memory is given back once every holder of
+ * the dataset has released it; see acquire and release.
  * 
  * @author Michael Kölling
  * @version 1.0
  */
 public class DataSet
 {
+    private static final int INITIAL_CAPACITY = 1024;
+
     private String pollutant;
     private String year;
     private String metric;
     private String units;
     
-    private List<DataPoint> data;
+    private GridGeometry geometry;
+    private double[] values;
+    private QuantizedValues quantized;
+    private OffHeapColumn offHeap;
+    private long[] validity;
+    private SummedAreaTable areaTable;
+    private int size;
+    // the creator's reference, plus one for each acquire not yet released
+    private final AtomicInteger references = new AtomicInteger(1);
+    // told when a structure built on demand makes estimateBytes grow
+    private volatile Runnable growthListener;
 
     /**
      * Constructor for objects of class DataSet
@@ -31,7 +52,42 @@ public class DataSet
         this.metric = metric;
         this.units = units;
         
-        data = new ArrayList<DataPoint>();
+        geometry = new GridGeometry();
+        values = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Constructor for a DataSet holding columns that have already been filled, for example
+     * from a snapshot. The four columns must have the same length.
+     */
+    public DataSet(String pollutant, String year, String metric, String units,
+                   int[] gridCodes, int[] xs, int[] ys, double[] values)
+    {
+        this.pollutant = pollutant;
+        this.year = year;
+        this.metric = metric;
+        this.units = units;
+
+        this.geometry = new GridGeometry(gridCodes, xs, ys, gridCodes.length);
+        this.values = values;
+        this.size = gridCodes.length;
+    }
+
+    /**
+     * Constructor for a DataSet holding a value column over an existing geometry. The value
+     * column must be as long as the geometry.
+     */
+    public DataSet(String pollutant, String year, String metric, String units,
+                   GridGeometry geometry, double[] values)
+    {
+        this.pollutant = pollutant;
+        this.year = year;
+        this.metric = metric;
+        this.units = units;
+
+        this.geometry = geometry;
+        this.values = values;
+        this.size = geometry.size();
     }
 
     /**
@@ -67,11 +123,392 @@ public class DataSet
     }
     
     /**
-     * Return the data points of this dataset.
+     * Return the data points of this dataset. The list is a read-only view over the
+     * columns; each DataPoint is created when it is read.
      */
     public List<DataPoint> getData()
     {
-        return data;
+        return new AbstractList<DataPoint>() {
+            public DataPoint get(int index)
+            {
+                Objects.checkIndex(index, size);
+                return getDataPoint(index);
+            }
+
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Return the number of data points in this dataset.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the gridcode of the data point at the given index.
+     */
+    public int getGridCode(int index)
+    {
+        return geometry.getGridCode(index);
+    }
+
+    /**
+     * Return the x coordinate (easting) of the data point at the given index.
+     */
+    public int getX(int index)
+    {
+        return geometry.getX(index);
+    }
+
+    /**
+     * Return the y coordinate (northing) of the data point at the given index.
+     */
+    public int getY(int index)
+    {
+        return geometry.getY(index);
+    }
+
+    /**
+     * Return the value of the data point at the given index.
+     */
+    public double getValue(int index)
+    {
+        if (quantized != null) {
+            return quantized.decode(index);
+        }
+        return offHeap == null ? values[index] : offHeap.get(index);
+    }
+
+    /**
+     * Return the value column of this dataset, or null if it is quantized or off the heap.
+     * Only the first size() entries are values, and the array must not be changed.
+     */
+    public double[] getValueColumn()
+    {
+        return values;
+    }
+
+    /**
+     * Return the validity bitmap of this dataset, in which the bit of each data point is
+     * set unless its value is missing. See StatisticsKernels.validity. The bitmap is built
+     * the first time it is needed.
+     */
+    public long[] getValidity()
+    {
+        long[] bits = validity;
+        if (bits == null) {
+            double[] column = values;
+            if (quantized != null) {
+                column = quantized.decodeAll(size);
+            }
+            else if (offHeap != null) {
+                column = offHeap.toArray(size);
+            }
+            bits = StatisticsKernels.validity(column, size);
+            validity = bits;
+            grown();
+        }
+        return bits;
+    }
+
+    /**
+     * Return the summed-area tables of this dataset, which give the count, sum and sum of
+     * squares over any rectangle while reading only the cells along its edges. They are built
+     * the first time they are needed, and are null if the data is too spread out for them.
+     */
+    public SummedAreaTable getSummedAreaTable()
+    {
+        SummedAreaTable table;
+        boolean built = false;
+        synchronized (this) {
+            if (areaTable == null) {
+                areaTable = SummedAreaTable.build(this);
+                built = areaTable != null;
+            }
+            table = areaTable;
+        }
+        // outside the lock, since the listener may weigh this dataset again
+        if (built) {
+            grown();
+        }
+        return table;
+    }
+
+    /**
+     * Set what is told when this dataset builds a structure on demand, such as its
+     * summed-area tables, which makes estimateBytes grow. A cache uses this to weigh
+     * the dataset again.
+     *
+     * @param  listener  Run after each such structure is built, or null for nothing
+     */
+    public void setGrowthListener(Runnable listener)
+    {
+        growthListener = listener;
+    }
+
+    /**
+     * Tell the growth listener, if there is one, that estimateBytes has grown.
+     */
+    private void grown()
+    {
+        Runnable listener = growthListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Return the data point at the given index as a DataPoint object.
+     */
+    public DataPoint getDataPoint(int index)
+    {
+        return new DataPoint(geometry.getGridCode(index), geometry.getX(index), geometry.getY(index), getValue(index));
+    }
+
+    /**
+     * Return the index of the data point at an easting/northing, or GridIndex.MISSING if
+     * there is none. Uses the grid index, which is built on the first lookup.
+     */
+    public int indexOf(int x, int y)
+    {
+        return getGridIndex().indexOf(x, y);
+    }
+
+    /**
+     * Return the data point at an easting/northing, or null if there is none.
+     */
+    public DataPoint lookup(int x, int y)
+    {
+        int index = indexOf(x, y);
+        return index == GridIndex.MISSING ? null : getDataPoint(index);
+    }
+
+    /**
+     * Return the dense 1 km grid index of this dataset, building it the first time it is needed.
+     * The index belongs to the geometry, so datasets sharing a geometry share the index.
+     */
+    public GridIndex getGridIndex()
+    {
+        return getGeometry().getGridIndex();
+    }
+
+    /**
+     * Return the index of the data point with a gridcode, or GridcodeIndex.MISSING if
+     * there is none. Uses the gridcode index, which is built on the first lookup.
+     */
+    public int indexOfGridCode(int gridCode)
+    {
+        return getGridcodeIndex().indexOf(gridCode);
+    }
+
+    /**
+     * Look up many gridcodes at once. Each entry of result is set to the index of the data
+     * point with the gridcode at the same position, or GridcodeIndex.MISSING.
+     */
+    public void indexOfGridCodes(int[] gridCodes, int[] result)
+    {
+        getGridcodeIndex().indexOf(gridCodes, result);
+    }
+
+    /**
+     * Return the gridcode index of this dataset, building it the first time it is needed.
+     * The index belongs to the geometry, so datasets sharing a geometry share the index.
+     */
+    public GridcodeIndex getGridcodeIndex()
+    {
+        return getGeometry().getGridcodeIndex();
+    }
+
+    /**
+     * Return the geometry (gridcode, x and y columns) of this dataset.
+     */
+    public GridGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+    /**
+     * Replace the geometry of this dataset with an equal one, so that datasets covering
+     * the same grid can share a single copy of the coordinates.
+     *
+     * @param  shared  A geometry holding the same points as the current one
+     */
+    public void setGeometry(GridGeometry shared)
+    {
+        if (!shared.equals(geometry)) {
+            throw new IllegalArgumentException("The geometry does not match the dataset");
+        }
+        geometry = shared;
+    }
+
+    /**
+     * Return true if the other dataset has the same geometry object, in which case the
+     * data point at any index is the same grid cell in both datasets.
+     */
+    public boolean hasSameGeometry(DataSet other)
+    {
+        return getGeometry() == other.getGeometry();
+    }
+
+    /**
+     * Store the values of this dataset as 16-bit fixed-point codes instead of doubles.
+     * Values read back afterwards may differ from the originals by up to the maximum
+     * error of the encoding. Once quantized the dataset can no longer have data points added.
+     */
+    public void quantize()
+    {
+        if (quantized == null) {
+            quantized = QuantizedValues.encode(values, size);
+            values = null;
+            areaTable = null;
+        }
+    }
+
+    /**
+     * Return true if the values of this dataset are stored as fixed-point codes.
+     */
+    public boolean isQuantized()
+    {
+        return quantized != null;
+    }
+
+    /**
+     * Return the fixed-point codes of this dataset's values, or null if it is not quantized.
+     */
+    public QuantizedValues getQuantizedValues()
+    {
+        return quantized;
+    }
+
+    /**
+     * Move the values of this dataset out of the Java heap into a column from the arena.
+     * The values are unchanged. Nothing happens if they are quantized or already off the heap.
+     * Once off the heap the dataset can no longer have data points added.
+     *
+     * @param  arena  The arena to allocate the column from
+     */
+    public void moveOffHeap(OffHeapArena arena)
+    {
+        if (quantized == null && offHeap == null) {
+            // the bitmap stays on the heap; building it now saves reading the column back
+            getValidity();
+            offHeap = arena.allocate(size);
+            offHeap.copyFrom(values, size);
+            values = null;
+        }
+    }
+
+    /**
+     * Return true if the values of this dataset are stored off the Java heap.
+     */
+    public boolean isOffHeap()
+    {
+        return offHeap != null;
+    }
+
+    /**
+     * Return the off-heap column holding this dataset's values, or null if they are on the heap.
+     */
+    public OffHeapColumn getOffHeapValues()
+    {
+        return offHeap;
+    }
+
+    /**
+     * Take a reference to this dataset, so that its off-heap memory stays readable until the
+     * reference is released. Whoever creates a dataset holds the first reference; a reader
+     * that finds it through a cache acquires its own for as long as it reads.
+     *
+     * @return  true if the dataset can be read, false if its last reference has already
+     *          been released and it must be loaded again
+     */
+    public boolean acquire()
+    {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give up a reference taken by acquire, or the creator's reference. Once the last one
+     * is given up the off-heap memory of this dataset goes back to its arena and the
+     * dataset must not be read again.
+     */
+    public void release()
+    {
+        int count = references.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("The dataset has already been released");
+        }
+        if (count == 0 && offHeap != null) {
+            offHeap.release();
+        }
+    }
+
+    /**
+     * Return true if this dataset's off-heap memory has been given back and it can no longer be read.
+     */
+    public boolean isReleased()
+    {
+        return offHeap != null && offHeap.isReleased();
+    }
+
+    /**
+     * Return an estimate of the memory used by this dataset in bytes, on or off the heap,
+     * including its geometry.
+     */
+    public long estimateBytes()
+    {
+        return estimateOwnBytes() + getGeometry().estimateBytes();
+    }
+
+    /**
+     * Return an estimate of the memory used by this dataset in bytes, on or off the heap,
+     * leaving out its geometry, which other datasets may share. A cache adds each geometry
+     * once however many of its datasets use it.
+     */
+    public long estimateOwnBytes()
+    {
+        long bytes;
+        if (quantized != null) {
+            bytes = quantized.estimateBytes();
+        }
+        else {
+            bytes = (long) (offHeap != null ? offHeap.size() : values.length) * Double.BYTES;
+        }
+        if (areaTable != null) {
+            bytes += areaTable.estimateBytes();
+        }
+        if (validity != null) {
+            bytes += (long) validity.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Shrink the columns to the number of data points, freeing the spare capacity
+     * left over from loading. Called once a file has been read completely.
+     */
+    public void trimToSize()
+    {
+        if (values != null && values.length != size) {
+            values = Arrays.copyOf(values, size);
+        }
+        if (!geometry.isShared()) {
+            geometry.trimToSize();
+        }
     }
     
     /**
@@ -87,12 +524,45 @@ public class DataSet
      */
     public void addData(String[] values)
     {
-        data.add(new DataPoint(toInt(values[0]), 
-                               toInt(values[1]), 
-                               toInt(values[2]), 
-                               toDouble(values[3]))); 
+        addData(toInt(values[0]), 
+                toInt(values[1]), 
+                toInt(values[2]), 
+                toDouble(values[3])); 
     }
     
+    /**
+     * Add a data point to this dataset from values that have already been parsed.
+     * Invalid or missing values are expected to be passed in as -1.
+     * 
+     * Only a dataset whose values are still plain doubles on the heap can grow. Quantizing
+     * a dataset or moving it off the heap readies it to be shared with readers, who may
+     * hold the codes or the off-heap column, so neither is replaced underneath them.
+     *
+     * @param  gridCode  The gridcode of the data point
+     * @param  x  The x coordinate (easting) of the data point
+     * @param  y  The y coordinate (northing) of the data point
+     * @param  value  The value of the data point
+     * @throws IllegalStateException if the values are quantized or off the heap
+     */
+    public void addData(int gridCode, int x, int y, double value)
+    {
+        if (quantized != null || offHeap != null) {
+            throw new IllegalStateException("Data points cannot be added to a dataset that is quantized or off the heap");
+        }
+        if (geometry.isShared()) {
+            // other datasets use this geometry, so this dataset takes its own copy
+            geometry = geometry.copy();
+        }
+        validity = null;
+        areaTable = null;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        geometry.add(gridCode, x, y);
+        values[size] = value;
+        size++;
+    }
+
     /**
      * Convert a string to int. 
      * @param intString  The String holding the int value
@@ -129,6 +599,6 @@ public class DataSet
     public String toString()
     {
         return String.format("Dataset: Pollutant: %s, Year: %s, Metric: %s, Units: %s (%d data points)",
-                             pollutant, year, metric, units, data.size());
+                             pollutant, year, metric, units, size);
     }
 }
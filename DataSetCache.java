@@ -0,0 +1,350 @@
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of datasets which loads a dataset the first time it is asked for
+ * and evicts the least recently used datasets once the cache is over its limit.
+ *
+ * The limit is either a number of datasets or an estimate of the bytes they occupy. A dataset
+ * which grows once it is in the cache, for example by building its summed-area tables, is
+ * weighed again at that moment and may push other datasets out. Datasets sharing a grid
+ * geometry are weighed without it, and each geometry is added once for as long as any stored
+ * dataset uses it.
+ * Concurrent requests for a dataset that is still loading wait for the same load
+ * instead of parsing the file again. The cache holds a reference to each dataset it stores
+ * (see DataSet.acquire) and gives it up when the dataset is evicted, replaced or invalidated,
+ * so memory held outside the heap is released once the readers still using it are done too.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class DataSetCache
+{
+    private final int maxSets;
+    private final long maxBytes;
+    // access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries;
+    // the geometries of the stored datasets, each weighed once
+    private final IdentityHashMap<GridGeometry, Holders> geometries;
+    private long usedBytes;
+
+    /**
+     * Constructor for objects of class DataSetCache
+     * @param int maxSets the most datasets to keep loaded
+     * @param long maxBytes the most bytes (estimated) the loaded datasets may occupy
+     */
+    private DataSetCache(int maxSets, long maxBytes)
+    {
+        this.maxSets = maxSets;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.geometries = new IdentityHashMap<>();
+    }
+
+    /**
+     * Creates a cache which holds at most the given number of datasets
+     * @param int maxSets the most datasets to keep loaded
+     * @return DataSetCache the cache
+     */
+    public static DataSetCache ofSetCount(int maxSets)
+    {
+        return new DataSetCache(maxSets, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a cache which holds datasets up to the given number of bytes
+     * @param long maxBytes the most bytes (estimated) the loaded datasets may occupy
+     * @return DataSetCache the cache
+     */
+    public static DataSetCache ofBytes(long maxBytes)
+    {
+        return new DataSetCache(Integer.MAX_VALUE, maxBytes);
+    }
+
+    /**
+     * Creates a cache which never evicts
+     * @return DataSetCache the cache
+     */
+    public static DataSetCache unbounded()
+    {
+        return new DataSetCache(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the dataset stored under the key, loading it with the loader if it is not in the cache.
+     * If another thread is already loading the key this waits for that load to finish.
+     * @param String key the key of the dataset
+     * @param Function loader creates the dataset for the key, may return null if it could not be loaded
+     * @return DataSet the dataset, or null if it could not be loaded
+     */
+    public DataSet get(String key, Function<String, DataSet> loader)
+    {
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null){
+                entry = new Entry();
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+        if (!owner){
+            return entry.future.join();
+        }
+
+        DataSet dataSet = null;
+        try {
+            dataSet = loader.apply(key);
+        }
+        finally {
+            finishLoad(key, entry, dataSet);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Returns the dataset stored under the key as get does, with a reference taken for the
+     * caller, who must release it once done reading. A dataset evicted and released between
+     * being found and being acquired is loaded again.
+     * @param String key the key of the dataset
+     * @param Function loader creates the dataset for the key, may return null if it could not be loaded
+     * @return DataSet the acquired dataset, or null if it could not be loaded
+     */
+    public DataSet acquire(String key, Function<String, DataSet> loader)
+    {
+        while (true){
+            DataSet dataSet = get(key, loader);
+            if (dataSet == null || dataSet.acquire()){
+                return dataSet;
+            }
+        }
+    }
+
+    /**
+     * Stores a dataset under the key, replacing whatever was there. The cache takes over the
+     * caller's reference to the dataset.
+     * @param String key the key of the dataset
+     * @param DataSet dataSet the dataset to store
+     */
+    public void put(String key, DataSet dataSet)
+    {
+        Entry entry = new Entry();
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+        }
+        finishLoad(key, entry, dataSet);
+    }
+
+    /**
+     * Removes the dataset stored under the key so that the next request loads it again
+     * @param String key the key of the dataset
+     */
+    public synchronized void invalidate(String key)
+    {
+        remove(key);
+    }
+
+    /**
+     * Returns true if the dataset stored under the key is loaded, without counting as a use of it
+     * @param String key the key of the dataset
+     * @return boolean true or false
+     */
+    public synchronized boolean isLoaded(String key)
+    {
+        // iterating does not change the access order, unlike get()
+        for (Map.Entry<String, Entry> entry : entries.entrySet()){
+            if (entry.getKey().equals(key)){
+                return entry.getValue().future.isDone();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the estimated bytes used by the loaded datasets
+     * @return long bytes
+     */
+    public synchronized long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * Records the result of a load, then evicts least recently used datasets until the cache is within its limit
+     * @param String key the key that was loaded
+     * @param Entry entry the entry the load belongs to
+     * @param DataSet dataSet the loaded dataset, or null if the load failed
+     */
+    private void finishLoad(String key, Entry entry, DataSet dataSet)
+    {
+        boolean stored = false;
+        synchronized (this) {
+            if (entries.get(key) == entry){
+                if (dataSet == null){
+                    // do not cache failures, the next request tries again
+                    entries.remove(key);
+                }
+                else{
+                    entry.bytes = dataSet.estimateOwnBytes();
+                    usedBytes += entry.bytes;
+                    entry.geometry = dataSet.getGeometry();
+                    hold(entry.geometry);
+                    stored = true;
+                    dataSet.setGrowthListener(() -> reweigh(key, entry));
+                    evict(key);
+                }
+            }
+            // completed before the lock is let go, or an entry removed in between would count
+            // as still loading and neither this nor removed() would release its dataset
+            entry.future.complete(dataSet);
+        }
+        if (!stored && dataSet != null){
+            // the entry was replaced or invalidated while loading, so nothing holds the dataset
+            dataSet.release();
+        }
+    }
+
+    /**
+     * Weighs a stored dataset again after it has grown, then evicts other datasets if the cache
+     * is now over its limit
+     * @param String key the key of the dataset
+     * @param Entry entry the entry the dataset was stored in
+     */
+    private synchronized void reweigh(String key, Entry entry)
+    {
+        // the dataset may have left the cache since
+        if (entries.get(key) != entry){
+            return;
+        }
+        DataSet dataSet = entry.future.getNow(null);
+        if (dataSet != null){
+            usedBytes -= entry.bytes;
+            entry.bytes = dataSet.estimateOwnBytes();
+            usedBytes += entry.bytes;
+            evict(key);
+        }
+    }
+
+    /**
+     * Weighs a geometry again after it has grown, then evicts datasets if the cache is now over its limit
+     * @param GridGeometry geometry the geometry
+     */
+    private synchronized void reweigh(GridGeometry geometry)
+    {
+        Holders holders = geometries.get(geometry);
+        if (holders != null){
+            usedBytes -= holders.bytes;
+            holders.bytes = geometry.estimateBytes();
+            usedBytes += holders.bytes;
+            evict(null);
+        }
+    }
+
+    /**
+     * Counts a stored dataset as using a geometry, adding the geometry's bytes if it is the first
+     * @param GridGeometry geometry the geometry
+     */
+    private void hold(GridGeometry geometry)
+    {
+        Holders holders = geometries.get(geometry);
+        if (holders == null){
+            holders = new Holders();
+            holders.bytes = geometry.estimateBytes();
+            usedBytes += holders.bytes;
+            geometries.put(geometry, holders);
+            geometry.setGrowthListener(() -> reweigh(geometry));
+        }
+        holders.count++;
+    }
+
+    /**
+     * Counts a dataset leaving the cache as no longer using a geometry, taking the geometry's
+     * bytes off once no stored dataset uses it
+     * @param GridGeometry geometry the geometry
+     */
+    private void unhold(GridGeometry geometry)
+    {
+        Holders holders = geometries.get(geometry);
+        if (holders != null && --holders.count == 0){
+            usedBytes -= holders.bytes;
+            geometries.remove(geometry);
+            geometry.setGrowthListener(null);
+        }
+    }
+
+    /**
+     * Evicts the least recently used loaded datasets while over the limit. The dataset that was
+     * just loaded and datasets that are still loading are never evicted.
+     * @param String keep key of the dataset that was just loaded, or null to keep none
+     */
+    private void evict(String keep)
+    {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxSets || usedBytes > maxBytes) && it.hasNext()){
+            Map.Entry<String, Entry> next = it.next();
+            if (!next.getKey().equals(keep) && next.getValue().future.isDone()){
+                usedBytes -= next.getValue().bytes;
+                it.remove();
+                removed(next.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes an entry and releases its bytes
+     * @param String key the key of the dataset
+     */
+    private void remove(String key)
+    {
+        Entry old = entries.remove(key);
+        if (old != null){
+            usedBytes -= old.bytes;
+            removed(old);
+        }
+    }
+
+    /**
+     * Gives up the cache's reference to the dataset of an entry that has left the cache, and
+     * its hold on the dataset's geometry
+     * @param Entry entry the entry, which may still be loading
+     */
+    private void removed(Entry entry)
+    {
+        if (entry.geometry != null){
+            unhold(entry.geometry);
+        }
+        if (entry.future.isDone()){
+            DataSet dataSet = entry.future.getNow(null);
+            if (dataSet != null){
+                dataSet.setGrowthListener(null);
+                dataSet.release();
+            }
+        }
+    }
+
+    /**
+     * A cached dataset, or one that is still being loaded
+     */
+    private static class Entry
+    {
+        private final CompletableFuture<DataSet> future = new CompletableFuture<>();
+        // the dataset's own bytes, without its geometry
+        private long bytes;
+        private GridGeometry geometry;
+    }
+
+    /**
+     * How many stored datasets use a geometry, and the bytes it was weighed at
+     */
+    private static class Holders
+    {
+        private int count;
+        private long bytes;
+    }
+}
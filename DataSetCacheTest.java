@@ -0,0 +1,193 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The test class DataSetCacheTest contains unit tests for the eviction and loading of the
+ * dataset cache.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class DataSetCacheTest
+{
+    /**
+     * Default constructor for test class DataSetCacheTest
+     */
+    public DataSetCacheTest()
+    {
+    }
+
+    /**
+     * Test method for the least recently used dataset being evicted, and released, once
+     * there are more datasets than the cache holds.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction()
+    {
+        DataSetCache cache = DataSetCache.ofSetCount(2);
+        DataSet a = cache.get("a", key -> dataSet(10));
+        DataSet b = cache.get("b", key -> dataSet(10));
+        assertSame(a, cache.get("a", key -> fail("a is loaded")));  //a is now used more recently than b
+        cache.get("c", key -> dataSet(10));
+
+        assertTrue(cache.isLoaded("a"));
+        assertFalse(cache.isLoaded("b"));
+        assertTrue(cache.isLoaded("c"));
+        //the cache gave up its reference to b, and nothing else held it
+        assertFalse(b.acquire());
+        assertTrue(a.acquire());
+        a.release();
+    }
+
+    /**
+     * Test method for datasets being evicted once their estimated bytes are over the limit,
+     * with the newest dataset always kept.
+     */
+    @Test
+    public void testByteBoundEviction()
+    {
+        long bytes = dataSet(100).estimateBytes();
+        DataSetCache cache = DataSetCache.ofBytes(2 * bytes);
+        cache.get("a", key -> dataSet(100));
+        cache.get("b", key -> dataSet(100));
+        assertEquals(2 * bytes, cache.getUsedBytes());
+
+        cache.get("c", key -> dataSet(100));
+        assertFalse(cache.isLoaded("a"));
+        assertTrue(cache.isLoaded("b"));
+        assertTrue(cache.isLoaded("c"));
+        assertEquals(2 * bytes, cache.getUsedBytes());
+
+        //a dataset bigger than the whole limit is still kept while it is the newest
+        cache.get("big", key -> dataSet(1000));
+        assertTrue(cache.isLoaded("big"));
+        assertFalse(cache.isLoaded("b"));
+        assertFalse(cache.isLoaded("c"));
+        cache.invalidate("big");
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    /**
+     * Test method for requests for a dataset that is still loading waiting for the same load.
+     */
+    @Test
+    public void testSingleFlightLoad() throws Exception
+    {
+        DataSetCache cache = DataSetCache.unbounded();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<DataSet> first = CompletableFuture.supplyAsync(() -> cache.get("a", key -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                finish.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return dataSet(10);
+        }));
+        started.await();
+        CompletableFuture<DataSet> second = CompletableFuture.supplyAsync(() -> cache.get("a", key -> {
+            loads.incrementAndGet();
+            return dataSet(10);
+        }));
+        assertFalse(cache.isLoaded("a"));
+        finish.countDown();
+
+        assertSame(first.get(), second.get());
+        assertEquals(1, loads.get());
+        assertTrue(cache.isLoaded("a"));
+    }
+
+    /**
+     * Test method for a dataset invalidated while it is loading, which is handed to the
+     * waiting request but not stored, so the cache's reference to it is released.
+     */
+    @Test
+    public void testInvalidateDuringLoad() throws Exception
+    {
+        DataSetCache cache = DataSetCache.unbounded();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<DataSet> load = CompletableFuture.supplyAsync(() -> cache.get("a", key -> {
+            started.countDown();
+            try {
+                finish.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return dataSet(10);
+        }));
+        started.await();
+        cache.invalidate("a");
+        finish.countDown();
+
+        DataSet dataSet = load.get();
+        assertNotNull(dataSet);
+        assertFalse(cache.isLoaded("a"));
+        assertFalse(dataSet.acquire());
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    /**
+     * Test method for loads racing invalidations: whenever the load ends up out of the cache
+     * its dataset has been released, and whenever it is in the cache it can still be read.
+     */
+    @Test
+    public void testInvalidateRacingLoad() throws Exception
+    {
+        for (int i = 0; i < 2000; i++){
+            DataSetCache cache = DataSetCache.unbounded();
+            AtomicBoolean loading = new AtomicBoolean(true);
+            Thread invalidator = new Thread(() -> {
+                while (loading.get()){
+                    cache.invalidate("a");
+                }
+            });
+            invalidator.start();
+            DataSet dataSet = cache.get("a", key -> dataSet(10));
+            loading.set(false);
+            invalidator.join();
+
+            if (cache.isLoaded("a")){
+                assertTrue(dataSet.acquire(), "stored dataset released");
+            }
+            else{
+                assertFalse(dataSet.acquire(), "dataset out of the cache still held, round " + i);
+            }
+        }
+    }
+
+    /**
+     * Test method for a failed load not being cached, so the next request loads again.
+     */
+    @Test
+    public void testFailedLoadIsNotCached()
+    {
+        DataSetCache cache = DataSetCache.unbounded();
+        assertNull(cache.get("a", key -> null));
+        assertFalse(cache.isLoaded("a"));
+        assertNotNull(cache.get("a", key -> dataSet(10)));
+        assertTrue(cache.isLoaded("a"));
+    }
+
+    /**
+     * Returns a dataset of points on a line
+     */
+    private static DataSet dataSet(int points)
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        for (int i = 0; i < points; i++){
+            dataSet.addData(i, 500 + i * 1000, 500, i);
+        }
+        dataSet.trimToSize();
+        return dataSet;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes binary snapshots of parsed datasets, so that a csv file only has to be
+ * parsed once. A snapshot is stored next to its csv file with the extension .snapshot and
+ * holds:
+ *
+ *     magic, format version
+ *     size, modification time and CRC32 checksum of the source csv
+ *     pollutant, year, metric, units
+ *     number of rows, then the gridcode, x, y and value columns
+ *
+ * A snapshot is only used while the size and modification time of its csv file are the
+ * same as when it was written, otherwise the csv is parsed again and the snapshot rewritten.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class DataSetSnapshot
+{
+    private static final int MAGIC = 0x50564453; // "PVDS"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * Reads the snapshot of a csv file by memory-mapping it
+     * @param Path source the csv file the snapshot was made from
+     * @return DataSet the dataset, or null if there is no snapshot or it is out of date
+     */
+    public static DataSet read(Path source)
+    {
+        Path snapshot = snapshotPath(source);
+        if (!Files.exists(snapshot)){
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            long size = buffer.getLong();
+            long modified = buffer.getLong();
+            buffer.getLong(); // checksum, only needed to verify the snapshot against its csv by hand
+            if (size != attributes.size() || modified != attributes.lastModifiedTime().toMillis()){
+                return null;
+            }
+
+            String pollutant = readString(buffer);
+            String year = readString(buffer);
+            String metric = readString(buffer);
+            String units = readString(buffer);
+            int rows = buffer.getInt();
+
+            int[] gridCodes = new int[rows];
+            int[] xs = new int[rows];
+            int[] ys = new int[rows];
+            double[] values = new double[rows];
+            buffer.asIntBuffer().get(gridCodes);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+            buffer.asIntBuffer().get(xs);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+            buffer.asIntBuffer().get(ys);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+            buffer.asDoubleBuffer().get(values);
+            return new DataSet(pollutant, year, metric, units, gridCodes, xs, ys, values);
+        }
+        catch (IOException | RuntimeException e) {
+            // a damaged snapshot is treated as missing, the csv is parsed instead
+            System.out.println("Could not read snapshot " + snapshot);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a dataset next to the csv file it was parsed from. The snapshot
+     * is written to a temporary file first so a reader never sees half a snapshot.
+     * @param DataSet dataSet the dataset parsed from the csv file
+     * @param Path source the csv file
+     */
+    public static void write(DataSet dataSet, Path source)
+    {
+        Path snapshot = snapshotPath(source);
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            byte[][] header = {
+                bytes(dataSet.getPollutant()), bytes(dataSet.getYear()),
+                bytes(dataSet.getMetric()), bytes(dataSet.getUnits())
+            };
+            int rows = dataSet.size();
+            long length = 2 * Integer.BYTES + 3 * Long.BYTES + Integer.BYTES
+                + (long) rows * (3 * Integer.BYTES + Double.BYTES);
+            for (byte[] field : header){
+                length += Short.BYTES + field.length;
+            }
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(attributes.size());
+                buffer.putLong(attributes.lastModifiedTime().toMillis());
+                buffer.putLong(checksum(source));
+                for (byte[] field : header){
+                    buffer.putShort((short) field.length);
+                    buffer.put(field);
+                }
+                buffer.putInt(rows);
+                for (int i = 0; i < rows; i++){
+                    buffer.putInt(dataSet.getGridCode(i));
+                }
+                for (int i = 0; i < rows; i++){
+                    buffer.putInt(dataSet.getX(i));
+                }
+                for (int i = 0; i < rows; i++){
+                    buffer.putInt(dataSet.getY(i));
+                }
+                for (int i = 0; i < rows; i++){
+                    buffer.putDouble(dataSet.getValue(i));
+                }
+                buffer.force();
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            // snapshots only speed up the next launch, so a failure here is not fatal
+            System.out.println("Could not write snapshot " + snapshot);
+            try {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Returns where the snapshot of a csv file is stored
+     * @param Path source the csv file
+     * @return Path the snapshot file
+     */
+    public static Path snapshotPath(Path source)
+    {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Calculates the CRC32 checksum of a file
+     * @param Path file the file
+     * @return long the checksum
+     */
+    private static long checksum(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Reads a string written as its length followed by its UTF-8 bytes
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a string
+     */
+    private static byte[] bytes(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class DataSetTest contains unit tests for the storage of a dataset's values and
+ * the references readers hold to them.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class DataSetTest
+{
+    private DataSet dataSet;
+
+    /**
+     * Default constructor for test class DataSetTest
+     */
+    public DataSetTest()
+    {
+    }
+
+    /**
+     * Sets up a dataset of three points.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(1, 500, 500, 10.0);
+        dataSet.addData(2, 1500, 500, -1.0);
+        dataSet.addData(3, 2500, 500, 30.0);
+    }
+
+    /**
+     * Test method for a dataset off the heap, which cannot grow and whose column stays
+     * readable until the last reference to it is released.
+     */
+    @Test
+    public void testOffHeapDataSetCannotGrow()
+    {
+        OffHeapArena arena = new OffHeapArena();
+        dataSet.moveOffHeap(arena);
+        assertTrue(dataSet.isOffHeap());
+        assertTrue(dataSet.acquire());
+
+        assertThrows(IllegalStateException.class, () -> dataSet.addData(4, 3500, 500, 40.0));
+        assertEquals(3, dataSet.size());
+
+        // the creator's reference goes, the reader's keeps the column
+        dataSet.release();
+        assertFalse(dataSet.isReleased());
+        assertEquals(30.0, dataSet.getValue(2));
+        dataSet.release();
+        assertTrue(dataSet.isReleased());
+        assertFalse(dataSet.acquire());
+    }
+
+    /**
+     * Test method for a quantized dataset, which cannot grow.
+     */
+    @Test
+    public void testQuantizedDataSetCannotGrow()
+    {
+        dataSet.quantize();
+        assertThrows(IllegalStateException.class, () -> dataSet.addData(new String[]{"4", "3500", "500", "40.0"}));
+        assertEquals(3, dataSet.size());
+        assertEquals(10.0, dataSet.getValue(0), dataSet.getQuantizedValues().getMaxError());
+    }
+
+    /**
+     * Test method for a dataset on the heap, which grows.
+     */
+    @Test
+    public void testDataSetOnHeapGrows()
+    {
+        dataSet.addData(4, 3500, 500, 40.0);
+        assertEquals(4, dataSet.size());
+        assertEquals(40.0, dataSet.getValue(3));
+        assertEquals(3, dataSet.indexOf(3500, 500));
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A place a dataset comes from: a bundled csv file, the binary snapshot of one, the csv
+ * file the live WAQI data is written to, or data generated by the program.
+ *
+ * DataRepository keeps one source for each type of data and year, and loads through it
+ * whatever the source is, so the cache, prefetching and background loading work the same
+ * way for all of them.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public interface DataSource
+{
+    /**
+     * Starts loading the dataset. A load that has not started yet can be stopped by
+     * cancelling the future; one that has started runs to the end.
+     * @param Executor executor runs the load, Runnable::run to load on the calling thread
+     * @return CompletableFuture<DataSet> completes with the dataset, or with null if it could not be loaded
+     */
+    CompletableFuture<DataSet> load(Executor executor);
+
+    /**
+     * Returns what the source loads from, for messages
+     * @return String a short description, such as a file name
+     */
+    String getName();
+
+    /**
+     * Returns a description of the data the source would load now, which changes whenever
+     * the data does, so that results worked out from it can be stored and reused
+     * @return String the fingerprint, or null if the source cannot tell when its data changes
+     */
+    default String getFingerprint()
+    {
+        return null;
+    }
+}
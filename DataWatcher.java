@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the pollution data folders for csv files (plain or gzip compressed) that are
+ * created or rewritten while the program runs, and has the repository reload them.
+ *
+ * Copying a file usually produces several modify events in a row, so a reload is only started
+ * once a file has not changed for DEBOUNCE_MILLIS. Events are read on one background thread and
+ * reloads run on another, so neither holds up the JavaFX thread.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class DataWatcher
+{
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final DataRepository repository;
+    private final Path root;
+    private final WatchService watchService;
+    private final ScheduledExecutorService reloader;
+    // the reload of each changed file that has not started yet, cancelled if the file changes again
+    private final HashMap<Path, ScheduledFuture<?>> pending;
+
+    /**
+     * Constructor for objects of class DataWatcher
+     * @param DataRepository repository the repository to reload changed files into
+     * @param Path root the folder holding the pollution data
+     * @param WatchService watchService the watch service the data folders are registered with
+     */
+    private DataWatcher(DataRepository repository, Path root, WatchService watchService)
+    {
+        this.repository = repository;
+        this.root = root;
+        this.watchService = watchService;
+        this.pending = new HashMap<>();
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DataWatcher-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts watching a data folder and each folder inside it, including folders created later
+     * @param DataRepository repository the repository to reload changed files into
+     * @param Path root the folder holding the pollution data
+     * @return DataWatcher the running watcher, or null if the folders could not be watched
+     */
+    public static DataWatcher start(DataRepository repository, Path root)
+    {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            register(watchService, root);
+            try (DirectoryStream<Path> folders = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path folder : folders){
+                    register(watchService, folder);
+                }
+            }
+            DataWatcher watcher = new DataWatcher(repository, root, watchService);
+            Thread thread = new Thread(watcher::watch, "DataWatcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        }
+        catch (IOException e) {
+            System.out.println("Could not watch " + root + " for changes");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stops watching the folders. Reloads that have not started yet are dropped.
+     */
+    public void close()
+    {
+        try {
+            watchService.close();
+        }
+        catch (IOException e) {
+            System.out.println("Could not stop watching for changes");
+        }
+        reloader.shutdownNow();
+    }
+
+    /**
+     * Registers a folder for created and modified files
+     */
+    private static void register(WatchService watchService, Path folder) throws IOException
+    {
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Waits for changes until the watch service is closed
+     */
+    private void watch()
+    {
+        try {
+            while (true){
+                WatchKey key = watchService.take();
+                Path folder = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()){
+                    if (event.kind() != StandardWatchEventKinds.OVERFLOW){
+                        Path file = folder.resolve((Path) event.context());
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && folder.equals(root)
+                                && Files.isDirectory(file)){
+                            watchFolder(file);
+                        }
+                        else if (isDataFile(file)){
+                            schedule(file);
+                        }
+                    }
+                }
+                key.reset();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Starts watching a folder created inside the data folder. Files copied into it before it
+     * was registered sent no events, so they are reloaded as well.
+     * @param Path folder the new folder
+     */
+    private void watchFolder(Path folder)
+    {
+        try {
+            register(watchService, folder);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, DataWatcher::isDataFile)) {
+                for (Path file : files){
+                    schedule(file);
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Could not watch " + folder + " for changes");
+        }
+    }
+
+    /**
+     * Returns whether a file is a csv file, plain or gzip compressed
+     */
+    private static boolean isDataFile(Path file)
+    {
+        String name = file.getFileName().toString();
+        return name.endsWith(".csv") || name.endsWith(".csv.gz");
+    }
+
+    /**
+     * Schedules a reload of a file, replacing any reload of it that has not started yet
+     * @param Path file the file that changed
+     */
+    private synchronized void schedule(Path file)
+    {
+        ScheduledFuture<?> previous = pending.get(file);
+        if (previous != null){
+            previous.cancel(false);
+        }
+        pending.put(file, reloader.schedule(() -> reload(file), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Reloads a file once its reload is due, first forgetting the reload so that a change made
+     * while it runs schedules a new one
+     * @param Path file the file to reload
+     */
+    private void reload(Path file)
+    {
+        synchronized (this){
+            // a reload scheduled after this one started is still waiting and is kept
+            ScheduledFuture<?> scheduled = pending.get(file);
+            if (scheduled != null && scheduled.getDelay(TimeUnit.MILLISECONDS) <= 0){
+                pending.remove(file);
+            }
+        }
+        repository.reloadFile(file);
+    }
+
+    /**
+     * Returns how many reloads are waiting to start
+     */
+    synchronized int pendingCount()
+    {
+        return pending.size();
+    }
+}
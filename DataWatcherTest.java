@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * The test class DataWatcherTest checks which changes to a watched folder are reloaded.
+ * The repository only records the files it is asked to reload.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class DataWatcherTest
+{
+    // how long a reload may take to be asked for, well over the debounce delay
+    private static final long WAIT_MILLIS = 10000;
+
+    private Path root;
+    private List<Path> reloaded;
+    private DataWatcher watcher;
+
+    /**
+     * Default constructor for test class DataWatcherTest
+     */
+    public DataWatcherTest()
+    {
+    }
+
+    /**
+     * Starts watching an empty folder.
+     */
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("DataWatcherTest");
+        reloaded = new CopyOnWriteArrayList<>();
+        DataRepository repository = new DataRepository(DataSetCache.unbounded())
+        {
+            @Override
+            public void reloadFile(Path file)
+            {
+                reloaded.add(file);
+            }
+        };
+        watcher = DataWatcher.start(repository, root);
+        assertNotNull(watcher);
+    }
+
+    /**
+     * Stops watching and deletes the folder.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        watcher.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Test method for a file written several times being reloaded once, and the reload being
+     * forgotten once it has run.
+     */
+    @Test
+    public void testReloadIsForgottenOnceRun() throws IOException
+    {
+        Path file = root.resolve("no2.csv");
+        for (int i = 0; i < 5; i++){
+            Files.writeString(file, "NO2,,,\n" + i + "\n");
+        }
+        Files.writeString(root.resolve("notes.txt"), "not data");
+        assertTrue(waitFor(() -> reloaded.size() == 1 && watcher.pendingCount() == 0));
+        assertEquals(List.of(file), reloaded);
+
+        Files.writeString(file, "NO2,,,\nagain\n");
+        assertTrue(waitFor(() -> reloaded.size() == 2 && watcher.pendingCount() == 0));
+    }
+
+    /**
+     * Test method for a folder created after watching started, whose files are reloaded both
+     * when they were copied in with it and when they are written later.
+     */
+    @Test
+    public void testFolderCreatedLaterIsWatched() throws IOException
+    {
+        Path folder = Files.createDirectory(root.resolve("2024"));
+        assertTrue(waitFor(() -> watcher.pendingCount() == 0));
+        Path file = folder.resolve("pm10.csv.gz");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertTrue(waitFor(() -> reloaded.contains(file)));
+
+        Path later = folder.resolve("pm25.csv");
+        Files.writeString(later, "PM2.5,,,\n");
+        assertTrue(waitFor(() -> reloaded.contains(later)));
+    }
+
+    /**
+     * Waits until a condition holds
+     * @return boolean whether it held before WAIT_MILLIS had passed
+     */
+    private static boolean waitFor(BooleanSupplier condition)
+    {
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()){
+            if (System.currentTimeMillis() > end){
+                return false;
+            }
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
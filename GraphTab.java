@@ -1,3 +1,4 @@
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.chart.AreaChart;
 import javafx.scene.chart.NumberAxis;
@@ -15,6 +16,7 @@ import javafx.scene.paint.Color;
 import javafx.geometry.Point2D;
 import javafx.scene.input.ScrollEvent;
 import java.text.DecimalFormat;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Creates a pollution data graph, allowing users to 
@@ -25,12 +27,12 @@ import java.text.DecimalFormat;
  */
 public class GraphTab extends Tab
 {
-    private Statistics stats;
     private DataRepository repo;
     private final NumberAxis xAxis;
     private final NumberAxis yAxis;
     private final AreaChart<Number,Number> ac;
     private Stage stage;
+    private int plotCount; // Number of plots requested, used to drop the lines of older plots
     
     /** 
      * Constructor of the Tab Subclass, Graph Tab
@@ -40,7 +42,10 @@ public class GraphTab extends Tab
     {
         super("Graph");
         this.repo = repo;
-        this.xAxis = new NumberAxis(2018, 2023, 1);
+        this.xAxis = new NumberAxis();
+        xAxis.setTickUnit(1);
+        xAxis.setAutoRanging(false);
+        setYearRange(repo.getYears());
         this.yAxis = new NumberAxis();
         this.ac = new AreaChart<Number,Number>(xAxis,yAxis);
         this.stage = stage;
@@ -50,24 +55,55 @@ public class GraphTab extends Tab
     
     public void plotGraph(Region currentRegion, String zone, String trend){
         ac.getData().clear();
-        this.stats = new Statistics(currentRegion);
+        Statistics plotStats = new Statistics(currentRegion);
+        int plot = ++plotCount;
         
         if(trend.equals("Average"))
         ac.setTitle("Average Pollution Level (g/m^3)");
       
         if(trend.equals("Highest"))
         ac.setTitle("Highest Pollution Level (g/m^3)");
+
+        // Works out the values away from the JavaFX thread, since the data may still be loading
+        // Every line is worked out from the same version of the data, even if a file is reloaded meanwhile
+        RepositorySnapshot data = repo.snapshot();
+        // The years on offer come from the data files that were found
+        List<String> years = data.getYears();
+        setYearRange(years);
+        CompletableFuture.supplyAsync(() -> {
+            // Once the aggregate cube is built the lines are looked up in it without loading any data
+            AggregateCube cube = repo.getAggregateCube(data);
+            if (cube != null && !cube.covers(currentRegion)) {
+                cube = null;
+            }
+            if (cube == null) {
+                // Loads every year the lines need at once rather than one file at a time
+                data.prefetch(years, "no2", "pm10", "pm2.5");
+            }
+            return new double[][]{
+                lineValues(data, cube, currentRegion, "no2", years, plotStats, zone, trend),
+                lineValues(data, cube, currentRegion, "pm10", years, plotStats, zone, trend),
+                lineValues(data, cube, currentRegion, "pm2.5", years, plotStats, zone, trend)
+            };
+        }).thenAccept(values -> Platform.runLater(() -> {
+            if (plot != plotCount) {
+                return; // a newer plot has replaced this one
+            }
+            // Plots lines for all three pollutants 
+            createLine("no2", years, values[0], trend);
+            createLine("pm10", years, values[1], trend);
+            createLine("pm2.5", years, values[2], trend);
+            
+            // Adjusts Y-Axis when graph data changes
+            ac.getYAxis().setAutoRanging(true);
+            ac.requestLayout(); 
+            ac.layout(); 
+        })).exceptionally(e -> {
+            System.out.println("Could not plot graph");
+            e.printStackTrace();
+            return null;
+        });
         
-        // Plots lines for all three pollutants 
-        createLine("no2",currentRegion, zone, trend);
-        createLine("pm10",currentRegion, zone,trend);
-        createLine("pm2.5",currentRegion, zone,trend);
-        
-        
-        // Adjusts Y-Axis when graph data changes
-        ac.getYAxis().setAutoRanging(true);
-        ac.requestLayout(); 
-        ac.layout(); 
         // Sets sizes for graph
         ac.setPrefSize(800, 600); 
         ac.setMinSize(400, 300); 
@@ -75,27 +111,74 @@ public class GraphTab extends Tab
     }
     
     /**
-     * Creates a graph line based on pollution, region, zone and trend
+     * Sets the x axis to run from the first year to the last
      */
-    public void createLine(String pollutant, Region currentRegion, String zone, String trend)
+    private void setYearRange(List<String> years)
     {
-      XYChart.Series series = new XYChart.Series();   
-      series.setName(pollutant);
-      double pValue = 0.0;
+      if(!years.isEmpty()){
+        xAxis.setLowerBound(Integer.parseInt(years.get(0)));
+        xAxis.setUpperBound(Integer.parseInt(years.get(years.size() - 1)));
+      }
+    }
+    
+    /**
+     * Works out the value of each year of a line based on pollution, region, zone and trend.
+     * A year with no data for the pollutant gets NaN and is left off the line.
+     * The values are looked up in the cube if there is one, otherwise worked out from the datasets.
+     */
+    private double[] lineValues(RepositorySnapshot data, AggregateCube cube, Region region, String pollutant, List<String> years, Statistics stats, String zone, String trend)
+    {
+      double[] values = new double[years.size()];
       
-      for(int i = 2018; i < 2024; i++){
-        // Fetches data that will be used to calculate values based on trend and 
-        List<DataPoint> data = repo.locateSet(Integer.toString(i),pollutant).getData();
-        List<DataPoint> zoneData = stats.filterByZone(data,zone);
+      for(int i = 0; i < years.size(); i++){
+        if(cube != null) {
+            AggregateCube.Aggregate aggregate = cube.get(region, zone, years.get(i), pollutant);
+            if(aggregate == null) {
+                values[i] = Double.NaN;
+            }
+            else {
+                values[i] = trend.equals("Highest") ? aggregate.max() : aggregate.average();
+            }
+            continue;
+        }
         
-        if(trend.equals("Average")) {
-            pValue = stats.calculateAvgPollution(zoneData);
+        // Fetches data that will be used to calculate values based on trend and 
+        DataSet dataSet = data.acquireSet(years.get(i),pollutant);
+        if(dataSet == null) {
+            values[i] = Double.NaN;
+            continue;
         }
         
-        if(trend.equals("Highest")) {
-            pValue = stats.getHighestPollution(zoneData).value();
+        try {
+            if(trend.equals("Average")) {
+                values[i] = stats.calculateAvgPollution(dataSet, zone);
+            }
+            
+            if(trend.equals("Highest")) {
+                DataPoint highest = stats.aggregateZones(dataSet).getHighest(Statistics.zoneId(zone));
+                values[i] = highest == null ? 0 : highest.value();
+            }
+        }
+        finally {
+            dataSet.release();
+        }
+      }
+      return values;
+    }
+    
+    /**
+     * Creates a graph line from the value of each year
+     */
+    public void createLine(String pollutant, List<String> years, double[] values, String trend)
+    {
+      XYChart.Series series = new XYChart.Series();   
+      series.setName(pollutant);
+      
+      for(int i = 0; i < years.size(); i++){
+        if(Double.isNaN(values[i])) {
+            continue;
         }
-        XYChart.Data point = createPoint(i,pValue,trend);
+        XYChart.Data point = createPoint(Integer.parseInt(years.get(i)),values[i],trend);
         series.getData().add(point);
         }
         
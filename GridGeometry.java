@@ -0,0 +1,356 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The geometry of a dataset: the gridcode, x (easting) and y (northing) of every data
+ * point, stored as columns of ints.
+ *
+ * The DEFRA files for different years and pollutants cover the same UK grid, so
+ * datasets with identical coordinates share one GridGeometry and hold only their own
+ * values. Row i of every dataset sharing a geometry is then the same grid cell, which
+ * makes joining years or pollutants a matter of reading the same index. The grid and
+ * gridcode indexes are built once per geometry and shared along with it.
+ *
+ * A geometry is only modified while its file is being loaded. Once shared it must not
+ * change; DataSet copies it before adding points to a shared geometry.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class GridGeometry
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    // zone assignments kept for this many regions, the least recently used is dropped
+    private static final int MAX_ZONE_ASSIGNMENTS = 4;
+
+    private int[] gridCodes;
+    private int[] xs;
+    private int[] ys;
+    private int size;
+    private boolean shared;
+    private int hash;
+    private GridIndex gridIndex;
+    private GridcodeIndex gridcodeIndex;
+    private int[] blockBounds;
+    // told when an index built on demand makes estimateBytes grow
+    private volatile Runnable growthListener;
+    // zone assignments by region bounds, in order of use
+    private final Map<String, ZoneAssignment> zoneAssignments = new LinkedHashMap<>(8, 0.75f, true);
+
+    /**
+     * Constructor for an empty geometry that points are added to while loading
+     */
+    public GridGeometry()
+    {
+        this(new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], 0);
+    }
+
+    /**
+     * Constructor for a geometry holding columns that have already been filled
+     * @param int[] gridCodes the gridcode column
+     * @param int[] xs the x (easting) column
+     * @param int[] ys the y (northing) column
+     * @param int size the number of points in the columns
+     */
+    public GridGeometry(int[] gridCodes, int[] xs, int[] ys, int size)
+    {
+        this.gridCodes = gridCodes;
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of points
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the gridcode of the point at an index
+     */
+    public int getGridCode(int index)
+    {
+        return gridCodes[index];
+    }
+
+    /**
+     * Returns the x coordinate (easting) of the point at an index
+     */
+    public int getX(int index)
+    {
+        return xs[index];
+    }
+
+    /**
+     * Returns the y coordinate (northing) of the point at an index
+     */
+    public int getY(int index)
+    {
+        return ys[index];
+    }
+
+    /**
+     * Returns the x column. Only the first size() entries are points, and the array must not be changed.
+     */
+    public int[] getXColumn()
+    {
+        return xs;
+    }
+
+    /**
+     * Returns the y column. Only the first size() entries are points, and the array must not be changed.
+     */
+    public int[] getYColumn()
+    {
+        return ys;
+    }
+
+    /**
+     * Adds a point, growing the columns when they are full
+     * @param int gridCode the gridcode
+     * @param int x the easting
+     * @param int y the northing
+     */
+    public void add(int gridCode, int x, int y)
+    {
+        if (size == gridCodes.length){
+            resize(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        gridCodes[size] = gridCode;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        hash = 0;
+        gridIndex = null;
+        gridcodeIndex = null;
+        blockBounds = null;
+        zoneAssignments.clear();
+    }
+
+    /**
+     * Shrinks the columns to the number of points
+     */
+    public void trimToSize()
+    {
+        if (gridCodes.length != size){
+            resize(size);
+        }
+    }
+
+    /**
+     * Returns a copy of this geometry which is not shared
+     * @return GridGeometry the copy
+     */
+    public GridGeometry copy()
+    {
+        return new GridGeometry(Arrays.copyOf(gridCodes, Math.max(size, INITIAL_CAPACITY)),
+                                Arrays.copyOf(xs, Math.max(size, INITIAL_CAPACITY)),
+                                Arrays.copyOf(ys, Math.max(size, INITIAL_CAPACITY)), size);
+    }
+
+    /**
+     * Marks this geometry as shared between datasets, after which it must not change
+     */
+    public synchronized void markShared()
+    {
+        shared = true;
+    }
+
+    /**
+     * Returns true if this geometry is shared between datasets
+     */
+    public synchronized boolean isShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Returns the dense 1 km grid index of this geometry, building it the first time it is needed
+     * @return GridIndex the index
+     */
+    public GridIndex getGridIndex()
+    {
+        GridIndex index;
+        boolean built = false;
+        synchronized (this){
+            if (gridIndex == null){
+                gridIndex = GridIndex.build(this);
+                built = true;
+            }
+            index = gridIndex;
+        }
+        if (built){
+            grown();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the gridcode index of this geometry, building it the first time it is needed
+     * @return GridcodeIndex the index
+     */
+    public GridcodeIndex getGridcodeIndex()
+    {
+        GridcodeIndex index;
+        boolean built = false;
+        synchronized (this){
+            if (gridcodeIndex == null){
+                gridcodeIndex = GridcodeIndex.build(this);
+                built = true;
+            }
+            index = gridcodeIndex;
+        }
+        if (built){
+            grown();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the zone of every point within the region of a Statistics object, working it
+     * out the first time it is needed for that region
+     * @param Statistics stats the statistics of the region
+     * @return ZoneAssignment the assignment
+     */
+    public ZoneAssignment getZoneAssignment(Statistics stats)
+    {
+        String key = stats.getRegionKey();
+        ZoneAssignment assignment;
+        boolean built = false;
+        synchronized (this){
+            assignment = zoneAssignments.get(key);
+            if (assignment == null){
+                assignment = ZoneAssignment.build(this, stats);
+                zoneAssignments.put(key, assignment);
+                if (zoneAssignments.size() > MAX_ZONE_ASSIGNMENTS){
+                    String eldest = zoneAssignments.keySet().iterator().next();
+                    zoneAssignments.remove(eldest);
+                }
+                built = true;
+            }
+        }
+        if (built){
+            grown();
+        }
+        return assignment;
+    }
+
+    /**
+     * Returns the coordinate bounds of each block of 64 points used by StatisticsKernels,
+     * building them the first time they are needed
+     * @return int[] the bounds, see StatisticsKernels.blockBounds
+     */
+    public int[] getBlockBounds()
+    {
+        int[] bounds;
+        boolean built = false;
+        synchronized (this){
+            if (blockBounds == null){
+                blockBounds = StatisticsKernels.blockBounds(xs, ys, size);
+                built = true;
+            }
+            bounds = blockBounds;
+        }
+        if (built){
+            grown();
+        }
+        return bounds;
+    }
+
+    /**
+     * Sets what is told when this geometry builds an index on demand, which makes
+     * estimateBytes grow. A cache uses this to weigh the geometry again.
+     * @param Runnable listener run after each index is built, or null for nothing
+     */
+    public void setGrowthListener(Runnable listener)
+    {
+        growthListener = listener;
+    }
+
+    /**
+     * Tells the growth listener, if there is one, that estimateBytes has grown. Called
+     * without holding the lock, since the listener may weigh this geometry again.
+     */
+    private void grown()
+    {
+        Runnable listener = growthListener;
+        if (listener != null){
+            listener.run();
+        }
+    }
+
+    /**
+     * Returns the estimated bytes used by the columns and any indexes that have been built
+     * @return long bytes
+     */
+    public synchronized long estimateBytes()
+    {
+        long bytes = (long) gridCodes.length * Integer.BYTES * 3;
+        if (gridIndex != null){
+            bytes += gridIndex.estimateBytes();
+        }
+        if (gridcodeIndex != null){
+            bytes += gridcodeIndex.estimateBytes();
+        }
+        if (blockBounds != null){
+            bytes += (long) blockBounds.length * Integer.BYTES;
+        }
+        for (ZoneAssignment assignment : zoneAssignments.values()){
+            bytes += assignment.estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns true if the other geometry holds the same points in the same order
+     * @param Object other the object to compare with
+     * @return boolean true or false
+     */
+    public boolean equals(Object other)
+    {
+        if (this == other){
+            return true;
+        }
+        if (!(other instanceof GridGeometry)){
+            return false;
+        }
+        GridGeometry geometry = (GridGeometry) other;
+        return size == geometry.size
+            && hashCode() == geometry.hashCode()
+            && Arrays.equals(gridCodes, 0, size, geometry.gridCodes, 0, size)
+            && Arrays.equals(xs, 0, size, geometry.xs, 0, size)
+            && Arrays.equals(ys, 0, size, geometry.ys, 0, size);
+    }
+
+    /**
+     * Returns a hash of the points, calculated once
+     * @return int the hash
+     */
+    public int hashCode()
+    {
+        int h = hash;
+        if (h == 0){
+            h = size;
+            for (int i = 0; i < size; i++){
+                h = 31 * (31 * (31 * h + gridCodes[i]) + xs[i]) + ys[i];
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Copies the columns into arrays of a new capacity
+     * @param int capacity the new length of the columns
+     */
+    private void resize(int capacity)
+    {
+        gridCodes = Arrays.copyOf(gridCodes, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+}
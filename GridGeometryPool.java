@@ -0,0 +1,66 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps one copy of each distinct grid geometry so that datasets loaded from files
+ * covering the same grid share their coordinate columns.
+ *
+ * Geometries are held weakly, so a geometry is forgotten once no loaded dataset uses it.
+ * A pooled geometry is marked shared, which only means it must no longer change; a
+ * DataSetCache still counts its bytes once for all the datasets using it.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class GridGeometryPool
+{
+    private final HashMap<Integer, List<WeakReference<GridGeometry>>> geometries;
+
+    /**
+     * Constructor for objects of class GridGeometryPool
+     */
+    public GridGeometryPool()
+    {
+        geometries = new HashMap<>();
+    }
+
+    /**
+     * Makes a dataset use the pooled copy of its geometry. If no pooled geometry has the
+     * same points the dataset's own geometry is added to the pool instead.
+     * @param DataSet dataSet a dataset that has finished loading
+     */
+    public void share(DataSet dataSet)
+    {
+        GridGeometry geometry = dataSet.getGeometry();
+        GridGeometry pooled = intern(geometry);
+        if (pooled != geometry){
+            dataSet.setGeometry(pooled);
+        }
+    }
+
+    /**
+     * Returns the pooled geometry with the same points as the given one, pooling the given one if there is none
+     * @param GridGeometry geometry the geometry to look for
+     * @return GridGeometry the pooled geometry
+     */
+    public synchronized GridGeometry intern(GridGeometry geometry)
+    {
+        List<WeakReference<GridGeometry>> bucket = geometries.computeIfAbsent(geometry.hashCode(), h -> new ArrayList<>());
+        Iterator<WeakReference<GridGeometry>> it = bucket.iterator();
+        while (it.hasNext()){
+            GridGeometry pooled = it.next().get();
+            if (pooled == null){
+                it.remove();
+            }
+            else if (pooled.equals(geometry)){
+                return pooled;
+            }
+        }
+        geometry.markShared();
+        bucket.add(new WeakReference<>(geometry));
+        return geometry;
+    }
+}
@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * A dense index over the 1 km grid of a dataset which finds the data point at an
+ * easting/northing with a single array read.
+ *
+ * The PCM data sits on a regular grid of 1 km cells whose centres end in 500. The index
+ * covers the bounding box of the data with one int per cell, holding the index of the
+ * data point in that cell or MISSING when the dataset has no point there. The cells are
+ * always those of that fixed grid, with the south west one taken from the bounding box,
+ * so a stray point off the grid cannot shift them. Points which do not sit on the grid
+ * are kept in a short list and checked one by one.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class GridIndex
+{
+    public static final int CELL_SIZE = 1000;
+    public static final int MISSING = -1;
+    // larger boxes than this are not indexed, lookups then scan every point
+    private static final long MAX_CELLS = 64L * 1024 * 1024;
+
+    private final GridGeometry geometry;
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    private final int[] cells;
+    // data points which are not on the grid, in the order they appear in the dataset
+    private final int[] offGrid;
+
+    /**
+     * Constructor for objects of class GridIndex
+     */
+    private GridIndex(GridGeometry geometry, int minX, int minY, int width, int height, int[] cells, int[] offGrid)
+    {
+        this.geometry = geometry;
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+        this.offGrid = offGrid;
+    }
+
+    /**
+     * Builds the index of a geometry's coordinates
+     * @param GridGeometry geometry the geometry to index
+     * @return GridIndex the index
+     */
+    public static GridIndex build(GridGeometry geometry)
+    {
+        int size = geometry.size();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++){
+            int x = geometry.getX(i);
+            int y = geometry.getY(i);
+            if (x >= 0 && y >= 0){
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+        }
+
+        // the centres of the grid cells at or below the lowest coordinates
+        if (minX <= maxX){
+            minX = latticeFloor(minX);
+            minY = latticeFloor(minY);
+        }
+        int width = minX > maxX ? 0 : (maxX - minX) / CELL_SIZE + 1;
+        int height = minY > maxY ? 0 : (maxY - minY) / CELL_SIZE + 1;
+        if ((long) width * height > MAX_CELLS){
+            width = 0;
+            height = 0;
+        }
+        int[] cells = new int[width * height];
+        Arrays.fill(cells, MISSING);
+
+        int[] offGrid = new int[16];
+        int offGridCount = 0;
+        for (int i = 0; i < size; i++){
+            int cell = cellOf(geometry.getX(i), geometry.getY(i), minX, minY, width, height);
+            if (cell == MISSING){
+                if (offGridCount == offGrid.length){
+                    offGrid = Arrays.copyOf(offGrid, offGridCount * 2);
+                }
+                offGrid[offGridCount++] = i;
+            }
+            else if (cells[cell] == MISSING){
+                // keep the first point of a cell, like a scan through the dataset would
+                cells[cell] = i;
+            }
+        }
+        return new GridIndex(geometry, minX, minY, width, height, cells, Arrays.copyOf(offGrid, offGridCount));
+    }
+
+    /**
+     * Returns the index of the data point at an easting/northing
+     * @param int x the easting
+     * @param int y the northing
+     * @return int the index of the data point, or MISSING if there is none
+     */
+    public int indexOf(int x, int y)
+    {
+        int cell = cellOf(x, y, minX, minY, width, height);
+        if (cell != MISSING && cells[cell] != MISSING){
+            return cells[cell];
+        }
+        for (int i : offGrid){
+            if (geometry.getX(i) == x && geometry.getY(i) == y){
+                return i;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns the position in the cell array of an easting/northing
+     * @param int x the easting
+     * @param int y the northing
+     * @return int the position, row by row from the south west cell, or MISSING if the point is outside the box or not on the grid
+     */
+    public int cellOf(int x, int y)
+    {
+        return cellOf(x, y, minX, minY, width, height);
+    }
+
+    /**
+     * Returns the index of the data point in a cell
+     * @param int cell the position in the cell array, as returned by cellOf
+     * @return int the index of the first data point in the cell, or MISSING if there is none
+     */
+    public int indexOfCell(int cell)
+    {
+        return cells[cell];
+    }
+
+    /**
+     * Returns the easting of the centre of the west column of cells
+     */
+    public int getMinX()
+    {
+        return minX;
+    }
+
+    /**
+     * Returns the northing of the centre of the south row of cells
+     */
+    public int getMinY()
+    {
+        return minY;
+    }
+
+    /**
+     * Returns the number of columns of cells, 0 if the data is too spread out to be indexed
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows of cells, 0 if the data is too spread out to be indexed
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the centre of the 1 km cell a coordinate lies in
+     * @param int coordinate an easting or northing
+     * @return int the easting or northing of the cell centre, ending in 500
+     */
+    public static int cellCentre(int coordinate)
+    {
+        return ((coordinate / CELL_SIZE) * CELL_SIZE) + CELL_SIZE / 2;
+    }
+
+    /**
+     * Returns the highest cell centre of the 1 km grid, ending in 500, at or below a coordinate
+     * @param int coordinate an easting or northing
+     * @return int the cell centre
+     */
+    private static int latticeFloor(int coordinate)
+    {
+        return Math.floorDiv(coordinate - CELL_SIZE / 2, CELL_SIZE) * CELL_SIZE + CELL_SIZE / 2;
+    }
+
+    /**
+     * Returns the position in the cell array of an easting/northing
+     * @return int the position, or MISSING if the point is outside the box or not on the grid
+     */
+    private static int cellOf(int x, int y, int minX, int minY, int width, int height)
+    {
+        int dx = x - minX;
+        int dy = y - minY;
+        if (dx < 0 || dy < 0 || dx % CELL_SIZE != 0 || dy % CELL_SIZE != 0){
+            return MISSING;
+        }
+        int column = dx / CELL_SIZE;
+        int row = dy / CELL_SIZE;
+        if (column >= width || row >= height){
+            return MISSING;
+        }
+        return row * width + column;
+    }
+
+    /**
+     * Returns the estimated bytes used by this index
+     * @return long bytes
+     */
+    public long estimateBytes()
+    {
+        return (long) (cells.length + offGrid.length) * Integer.BYTES;
+    }
+}
@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class GridIndexTest contains unit tests for the dense 1 km grid index.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class GridIndexTest
+{
+    /**
+     * Default constructor for test class GridIndexTest
+     */
+    public GridIndexTest()
+    {
+    }
+
+    /**
+     * Test method for finding points on the grid and off it by easting/northing.
+     */
+    @Test
+    public void testLookup()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(1, 1500, 2500, 10.0);
+        dataSet.addData(2, 3500, 2500, 20.0);
+        dataSet.addData(3, 2750, 4100, 30.0);   //not on the grid
+
+        assertEquals(0, dataSet.indexOf(1500, 2500));
+        assertEquals(1, dataSet.indexOf(3500, 2500));
+        assertEquals(2, dataSet.indexOf(2750, 4100));
+        assertEquals(GridIndex.MISSING, dataSet.indexOf(2500, 2500));
+        assertEquals(GridIndex.MISSING, dataSet.indexOf(99500, 2500));
+        assertNull(dataSet.lookup(2500, 3500));
+    }
+
+    /**
+     * Test method for a point off the grid at the south west corner of the data, which must
+     * not move the cells off the grid the other points sit on.
+     */
+    @Test
+    public void testOffGridPointAtMinimum()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(1, 1234, 2345, 5.0);    //not on the grid, lowest easting and northing
+        dataSet.addData(2, 1500, 2500, 10.0);
+        dataSet.addData(3, 3500, 2500, 20.0);
+        dataSet.addData(4, 2500, 4500, 30.0);
+
+        GridIndex index = dataSet.getGridIndex();
+        assertEquals(500, Math.floorMod(index.getMinX(), GridIndex.CELL_SIZE));
+        assertEquals(500, Math.floorMod(index.getMinY(), GridIndex.CELL_SIZE));
+        // the points on the grid each have a cell, only the stray point is looked for one by one
+        assertNotEquals(GridIndex.MISSING, index.cellOf(1500, 2500));
+        assertNotEquals(GridIndex.MISSING, index.cellOf(3500, 2500));
+        assertNotEquals(GridIndex.MISSING, index.cellOf(2500, 4500));
+        assertEquals(GridIndex.MISSING, index.cellOf(1234, 2345));
+
+        assertEquals(0, dataSet.indexOf(1234, 2345));
+        assertEquals(1, dataSet.indexOf(1500, 2500));
+        assertEquals(2, dataSet.indexOf(3500, 2500));
+        assertEquals(3, dataSet.indexOf(2500, 4500));
+        assertEquals(GridIndex.MISSING, dataSet.indexOf(2500, 2500));
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * An index from gridcode to the index of a data point, stored as a primitive open
+ * addressing hash table so that lookups are O(1) and create no objects.
+ *
+ * Keys and data point indexes are kept in two int arrays of a power of two length.
+ * A slot whose data point index is MISSING is empty; collisions move on to the next slot.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class GridcodeIndex
+{
+    public static final int MISSING = -1;
+
+    private final int[] keys;
+    private final int[] rows;
+    private final int mask;
+
+    /**
+     * Constructor for objects of class GridcodeIndex
+     * @param int expected the number of gridcodes that will be added
+     */
+    private GridcodeIndex(int expected)
+    {
+        // keep the table at most half full so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(expected, 1) * 2 - 1) << 1;
+        keys = new int[capacity];
+        rows = new int[capacity];
+        Arrays.fill(rows, MISSING);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Builds the index of a geometry's gridcodes
+     * @param GridGeometry geometry the geometry to index
+     * @return GridcodeIndex the index
+     */
+    public static GridcodeIndex build(GridGeometry geometry)
+    {
+        GridcodeIndex index = new GridcodeIndex(geometry.size());
+        for (int i = 0; i < geometry.size(); i++){
+            index.add(geometry.getGridCode(i), i);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the data point with a gridcode
+     * @param int gridCode the gridcode
+     * @return int the index of the data point, or MISSING if there is none
+     */
+    public int indexOf(int gridCode)
+    {
+        int slot = hash(gridCode) & mask;
+        while (rows[slot] != MISSING){
+            if (keys[slot] == gridCode){
+                return rows[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Looks up many gridcodes in one call
+     * @param int[] gridCodes the gridcodes to look up
+     * @param int[] result filled with the index of the data point of each gridcode, or MISSING;
+     *        must be at least as long as gridCodes
+     */
+    public void indexOf(int[] gridCodes, int[] result)
+    {
+        for (int i = 0; i < gridCodes.length; i++){
+            result[i] = indexOf(gridCodes[i]);
+        }
+    }
+
+    /**
+     * Returns the estimated bytes used by this index
+     * @return long bytes
+     */
+    public long estimateBytes()
+    {
+        return (long) (keys.length + rows.length) * Integer.BYTES;
+    }
+
+    /**
+     * Adds a gridcode, unless it is already in the index. The first data point with a
+     * gridcode is kept, like a scan through the dataset would find.
+     */
+    private void add(int gridCode, int row)
+    {
+        int slot = hash(gridCode) & mask;
+        while (rows[slot] != MISSING){
+            if (keys[slot] == gridCode){
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = gridCode;
+        rows[slot] = row;
+    }
+
+    /**
+     * Spreads the bits of a gridcode. Gridcodes are mostly consecutive, so they are
+     * multiplied by the golden ratio to stop them filling runs of neighbouring slots.
+     */
+    private static int hash(int gridCode)
+    {
+        int h = gridCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
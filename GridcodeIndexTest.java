@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The test class GridcodeIndexTest contains unit tests for the open addressing gridcode index.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class GridcodeIndexTest
+{
+    /**
+     * Default constructor for test class GridcodeIndexTest
+     */
+    public GridcodeIndexTest()
+    {
+    }
+
+    /**
+     * Test method for gridcodes which are 0, negative or the same as an empty slot's row.
+     */
+    @Test
+    public void testSpecialGridCodes()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(0, 500, 500, 1.0);
+        dataSet.addData(-1, 1500, 500, 2.0);
+        dataSet.addData(Integer.MIN_VALUE, 2500, 500, 3.0);
+        dataSet.addData(Integer.MAX_VALUE, 3500, 500, 4.0);
+        GridcodeIndex index = GridcodeIndex.build(dataSet.getGeometry());
+
+        assertEquals(0, index.indexOf(0));
+        assertEquals(1, index.indexOf(-1));
+        assertEquals(2, index.indexOf(Integer.MIN_VALUE));
+        assertEquals(3, index.indexOf(Integer.MAX_VALUE));
+        assertEquals(GridcodeIndex.MISSING, index.indexOf(1));
+    }
+
+    /**
+     * Test method for a gridcode which appears twice, where the first data point is kept.
+     */
+    @Test
+    public void testDuplicateGridCodeKeepsFirst()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(7, 500, 500, 1.0);
+        dataSet.addData(8, 1500, 500, 2.0);
+        dataSet.addData(7, 2500, 500, 3.0);
+        GridcodeIndex index = GridcodeIndex.build(dataSet.getGeometry());
+
+        assertEquals(0, index.indexOf(7));
+        assertEquals(1, index.indexOf(8));
+    }
+
+    /**
+     * Test method for many gridcodes, consecutive and spread out, so that their slots collide
+     * and lookups probe past other keys, compared with a HashMap. Gridcodes that are not in
+     * the index are looked up too, which must stop at an empty slot.
+     */
+    @Test
+    public void testCollisionsAgainstHashMap()
+    {
+        Random random = new Random(42);
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++){
+            //consecutive runs like the DEFRA files, and multiples of large powers of two
+            int gridCode = i % 3 == 0 ? 100000 + i : i % 3 == 1 ? (i << 12) : random.nextInt();
+            dataSet.addData(gridCode, 500, 500, i);
+            expected.putIfAbsent(gridCode, i);
+        }
+        GridcodeIndex index = GridcodeIndex.build(dataSet.getGeometry());
+
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()){
+            assertEquals((int) entry.getValue(), index.indexOf(entry.getKey()), "gridcode " + entry.getKey());
+        }
+        for (int i = 0; i < 5000; i++){
+            int gridCode = random.nextInt();
+            int row = expected.containsKey(gridCode) ? expected.get(gridCode) : GridcodeIndex.MISSING;
+            assertEquals(row, index.indexOf(gridCode), "gridcode " + gridCode);
+        }
+
+        int[] gridCodes = {100000, 100003, 1 << 12, 999999999};
+        int[] result = new int[gridCodes.length];
+        index.indexOf(gridCodes, result);
+        assertArrayEquals(new int[]{0, 3, 1, expected.getOrDefault(999999999, GridcodeIndex.MISSING)}, result);
+    }
+
+    /**
+     * Test method for an empty geometry, whose table still has an empty slot to stop at.
+     */
+    @Test
+    public void testEmptyIndex()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        GridcodeIndex index = GridcodeIndex.build(dataSet.getGeometry());
+        assertEquals(GridcodeIndex.MISSING, index.indexOf(0));
+    }
+}
@@ -68,18 +68,26 @@ public class GridcodeSearch extends Search
         //Gets strings entered in the text areas
         String year = yearSelector.getValue();
         String pollutant = pollutantSelector.getValue();
-        DataSet dataset = repo.locateSet(year, pollutant.toLowerCase());
+        DataSet dataset = repo.acquireSet(year, pollutant.toLowerCase());
+        if (dataset == null){
+            resultLabel.setText("Invalid Input");
+            return;
+        }
         
         if (!checkBound(gridcodeVal)){
             resultLabel.setText("Out of bounds");
         }
         
-        for (DataPoint data : dataset.getData()){
-            if (data.gridCode() == gridcodeVal){
-                resultLabel.setText("Pollution Value : " + data.value());
+        try {
+            int index = dataset.indexOfGridCode(gridcodeVal);
+            if (index != GridcodeIndex.MISSING){
+                resultLabel.setText("Pollution Value : " + dataset.getValue(index));
                 return;
             }
         }
+        finally {
+            dataset.release();
+        }
         resultLabel.setText("Invalid Input");
     }
 
@@ -0,0 +1,59 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The live WAQI readings of one pollutant, from the csv file LiveDataCSVWriter writes them
+ * to. The file is rewritten each time live data is fetched, so it is parsed on every load
+ * and never snapshotted. Before the first fetch there is no file and the load gives null.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class LiveDataSource implements DataSource
+{
+    private final String fileName;
+
+    /**
+     * Constructor for objects of class LiveDataSource
+     * @param String folder the data folder, as passed to DataLoader
+     * @param String type the lower case type of data (no2, pm10, pm2.5)
+     */
+    public LiveDataSource(String folder, String type)
+    {
+        // The live data will be saved to a specific filename by LiveDataCSVWriter
+        this.fileName = folder + "/" + type + "/map" + type + "live.csv";
+    }
+
+    /**
+     * Starts parsing the live data file
+     * @param Executor executor runs the load
+     * @return CompletableFuture<DataSet> completes with the dataset, or with null if no live data has been fetched
+     */
+    public CompletableFuture<DataSet> load(Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            if (new DataLoader().resolvePath(fileName) == null){
+                return null;
+            }
+            return new DataLoader(true).loadDataFile(fileName);
+        }, executor);
+    }
+
+    /**
+     * Returns the name of the live data file
+     */
+    public String getName()
+    {
+        return fileName;
+    }
+
+    /**
+     * Returns the name, size and modification time of the live data file, which change each
+     * time live data is fetched
+     * @return String the fingerprint, or null if no live data has been fetched
+     */
+    public String getFingerprint()
+    {
+        return new CsvDataSource(fileName).getFingerprint();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Measures how quickly the bundled DEFRA files are loaded by the line based loader
+ * compared with the memory-mapped loader, on one thread and split into chunks parsed on
+ * every core. Each loader reads every file a few times so the JIT has warmed up and the
+ * files are in the page cache before the timed rounds.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class LoaderBenchmark
+{
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int TIMED_ROUNDS = 3;
+
+    private static final String[] FILES = {
+        "UKAirPollutionData/NO2/mapno22018.csv",
+        "UKAirPollutionData/NO2/mapno22023.csv",
+        "UKAirPollutionData/pm2.5/mappm252018g.csv",
+        "UKAirPollutionData/pm2.5/mappm252023g.csv",
+        "UKAirPollutionData/pm10/mappm102018g.csv",
+        "UKAirPollutionData/pm10/mappm102023g.csv"
+    };
+
+    /**
+     * Runs the benchmark and prints rows per second for each loader
+     */
+    public static void main(String[] args)
+    {
+        run("line reader", new DataLoader(false));
+        run("memory-mapped", new DataLoader(true));
+        run("parallel chunks", new DataLoader(true, true));
+    }
+
+    /**
+     * Loads every file with the given loader and prints the throughput of the timed rounds
+     * @param String name name of the loader to print
+     * @param DataLoader loader the loader to measure
+     */
+    private static void run(String name, DataLoader loader)
+    {
+        for (int i = 0; i < WARMUP_ROUNDS; i++){
+            loadAll(loader);
+        }
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++){
+            rows += loadAll(loader);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-15s %8.0f ms per round, %6.2f million rows/s%n",
+                          name, seconds * 1000 / TIMED_ROUNDS, rows / seconds / 1e6);
+    }
+
+    /**
+     * Loads every file once
+     * @param DataLoader loader the loader to use
+     * @return long the number of rows loaded
+     */
+    private static long loadAll(DataLoader loader)
+    {
+        long rows = 0;
+        for (String file : FILES){
+            DataSet dataSet = loader.loadDataFile(file);
+            if (dataSet != null){
+                rows += dataSet.size();
+            }
+        }
+        return rows;
+    }
+}
@@ -11,6 +11,7 @@ import javafx.event.*;
 import javafx.scene.layout.VBox;
 import javafx.scene.control.ScrollPane.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.Node;
 import javafx.geometry.Insets;
@@ -46,6 +47,7 @@ public class Main extends Application
     private HashMap<String, Boolean> colFilters;
 
     private DataRepository dataRepo;
+    private DataSet currentDataSet;
     private PollutionStatsPanel statsPanel;
     private RegionManager regionManager; 
     private GraphTab graphTab; 
@@ -61,6 +63,17 @@ public class Main extends Application
         this.currentGraph = "Average";
         this.visualApplied = false;
         this.dataRepo = new DataRepository();
+        // Starts on the latest year there is NO2 data for
+        List<String> no2Years = dataRepo.getYears(currentType);
+        if (!no2Years.isEmpty()){
+            this.currentYear = no2Years.get(no2Years.size() - 1);
+        }
+        // The statistics, comparison and graph look their totals up for these regions
+        List<Region> regions = new ArrayList<>();
+        for (int i = 0; i < regionManager.getRegionAmount(); i++){
+            regions.add(regionManager.getRegionIndex(i));
+        }
+        dataRepo.setAggregateRegions(regions);
         this.colFilters = new HashMap<String,Boolean>(Map.of(
              "0x800080ff", true,  // Purple
              "0x00ffffff", true,  // Cyan
@@ -86,12 +99,35 @@ public class Main extends Application
         currentType = type; 
         
         PollutionFilter pollutionFilter = new PollutionFilter();
-        DataSet dataSet = dataRepo.locateSet(year, type);
+        // The shown dataset is held until another one replaces it, so hovering can always read it
+        DataSet dataSet = dataRepo.acquireSet(year, type);
+        if (currentDataSet != null){
+            currentDataSet.release();
+        }
+        currentDataSet = dataSet;
         pollutionFilter.applyVisualisationEffect(currentRegion.getCanvas(), currentRegion, dataSet, colFilters);
         markers = pollutionFilter.getMarkers();
         visualApplied = true;
     }
     
+    /**
+     * Refreshes the map, statistics and graph after the data for a year and type has been reloaded
+     * @param String year the year of the reloaded data
+     * @param String type the type of the reloaded data
+     */
+    private void handleDataChange(String year, String type)
+    {
+        if(visualApplied && year.equals(currentYear) && type.equalsIgnoreCase(currentType)){
+            applyVisualise(currentYear, currentType);
+        }
+        statsPanel.refreshStatistics(year, type);
+        if(!year.equals("live")){
+            graphTab.plotGraph(currentRegion, currentZone, currentGraph);
+            // the cell cube is rebuilt for hovering over the reloaded data
+            CompletableFuture.runAsync(dataRepo::getCube);
+        }
+    }
+    
     /**
      * Clears the map of the pollution visualisation effect
      */
@@ -190,13 +226,14 @@ public class Main extends Application
             double adjustedX = point.getX();
             double adjustedY = point.getY();
             
-            // To find pollution level at location
-            String pValue = findPollutionValue(adjustedX, adjustedY);
-
             double x1 = (adjustedX * currentRegion.toRegionScaleX()) + currentRegion.getRegionLeft();
             double y1 = (adjustedY * currentRegion.toRegionScaleY()) + currentRegion.getRegionTop();
             
-            mouseCoordLabel.setText(" X : " + (int) x1 + " Y : " + (int) y1 + "\n Pollution Level: " + pValue);
+            // To find pollution level at location
+            String pValue = findPollutionValue((int) x1, (int) y1);
+            
+            mouseCoordLabel.setText(" X : " + (int) x1 + " Y : " + (int) y1 + "\n Pollution Level: " + pValue
+                                    + findPollutionTrend((int) x1, (int) y1));
             });
     
        currentCanvas.setOnMouseExited(event ->{
@@ -231,8 +268,13 @@ public class Main extends Application
     {
         this.stage = stage;
         
-        // Show the Welcome Window first
-        showInstructions(); // Blocks execution until "Finish" is clicked
+        // Show the Welcome Window first, loading the data in the background while it is open.
+        // The initial view (London, 2023, NO2) is loaded first; menus wait for data that is not loaded yet
+        WelcomeWindow welcome = new WelcomeWindow(stage);
+        dataRepo.loadInBackground(currentYear, currentType, welcome::showLoadingProgress)
+                .thenRun(dataRepo::buildAggregateCube)
+                .thenRun(dataRepo::getCube);
+        welcome.showAndWait(); // Blocks execution until "Finish" is clicked
         
         // After Welcome interaction is compeleted, start the main program
         VBox root = new VBox();
@@ -296,6 +338,10 @@ public class Main extends Application
         guiTabUpdates();
         handleUpdate();
         handleClick();
+        
+        // Reload data files rewritten while the program runs, then refresh the views showing them
+        dataRepo.addChangeListener((year, type) -> Platform.runLater(() -> handleDataChange(year, type)));
+        dataRepo.watchForChanges();
     }
 
     /**
@@ -419,8 +465,7 @@ public class Main extends Application
         Menu pm10View = new Menu("pm10");
         yearMenu.getItems().addAll(no2View,pm25View,pm10View);
         //pm10 years
-        for(int i = 2018; i< 2024; i++){
-            final String year = Integer.toString(i);
+        for(String year : dataRepo.getYears("pm10")){
             MenuItem item = new MenuItem(year);
             item.setOnAction(e -> handleVisualiseClick(item,year)); 
             //Add year menu item to data type
@@ -433,8 +478,7 @@ public class Main extends Application
         pm10View.getItems().add(pm10Live);
         
         //no2 years
-        for(int i = 2018; i< 2024; i++){
-            final String year = Integer.toString(i);
+        for(String year : dataRepo.getYears("no2")){
             MenuItem item = new MenuItem(year);
             item.setOnAction(e -> handleVisualiseClick(item,year)); 
             //Add year menu item to data type
@@ -447,8 +491,7 @@ public class Main extends Application
         no2View.getItems().add(no2Live);
         
         //pm2.5 years
-        for(int i = 2018; i< 2024; i++){
-            final String year = Integer.toString(i);
+        for(String year : dataRepo.getYears("pm2.5")){
             MenuItem item = new MenuItem(year);
             item.setOnAction(e -> handleVisualiseClick(item,year)); 
             //Add year menu item to data type
@@ -547,23 +590,45 @@ public class Main extends Application
     }  
     
     /**
-     * Finds the pollution value at the x and y of the mouse
-     * @param double adjustedX x coordinate
-     * @param double adjustedY y coordinate
-     * @return String marker value or Missing 
+     * Finds the pollution value of the grid cell under the mouse with a single
+     * lookup in the grid index of the visualised dataset
+     * @param int x easting under the mouse
+     * @param int y northing under the mouse
+     * @return String pollution value or Missing 
      */
-    private String findPollutionValue(double adjustedX, double adjustedY){
-        if (visualApplied){
-            for(Marker marker : markers){
-                if(marker.inRange(adjustedX,adjustedY)){
-                    return Double.toString(marker.getValue());
-                }
-            }
-        }
-        else{
+    private String findPollutionValue(int x, int y){
+        if (!visualApplied || currentDataSet == null){
             return "0";
         }
-        return "Missing";
+        int index = currentDataSet.indexOf(GridIndex.cellCentre(x), GridIndex.cellCentre(y));
+        if (index == GridIndex.MISSING){
+            return "Missing";
+        }
+        return Double.toString(currentDataSet.getValue(index));
     }
-}  
 
+    /**
+     * Finds the value of the shown pollutant in every year at a location, read from the cell
+     * cube in one lookup. Nothing is shown until the cube has been built for the current data.
+     * @param int x the easting
+     * @param int y the northing
+     * @return String a line with the value of each year, or an empty string
+     */
+    private String findPollutionTrend(int x, int y){
+        PollutionCube cube = dataRepo.peekCube();
+        if (!visualApplied || cube == null){
+            return "";
+        }
+        CellProfile profile = cube.profileAt(GridIndex.cellCentre(x), GridIndex.cellCentre(y));
+        if (profile == null){
+            return "";
+        }
+        StringBuilder trend = new StringBuilder("\n By year:");
+        for (String year : profile.years()){
+            double value = profile.getValue(currentType.toLowerCase(), year);
+            trend.append("  ").append(year).append(": ")
+                 .append(value == PollutionCube.MISSING_VALUE ? "Missing" : String.format("%.1f", value));
+        }
+        return trend.toString();
+    }
+}  
@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Hands out value columns stored outside the Java heap, in direct byte buffers, so the
+ * garbage collector does not have to copy or scan the values of loaded datasets.
+ *
+ * A column is released explicitly once its dataset is evicted or replaced. Its buffer is
+ * then kept for the next column of the same length, which is the usual case since the
+ * files for every year and pollutant cover the same grid. Direct memory is only given back
+ * to the operating system when the arena drops a buffer and the buffer is collected, so
+ * reusing buffers keeps both the heap and the native memory from growing with each load.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class OffHeapArena
+{
+    // spare buffers kept per column length; more than this are dropped
+    private static final int MAX_SPARE_BUFFERS = 4;
+
+    // released buffers by capacity in bytes, ready to be handed out again
+    private final HashMap<Integer, ArrayDeque<ByteBuffer>> spare;
+    private long allocatedBytes;
+    private long usedBytes;
+
+    /**
+     * Constructor for objects of class OffHeapArena
+     */
+    public OffHeapArena()
+    {
+        this.spare = new HashMap<>();
+    }
+
+    /**
+     * Allocates a column of doubles, reusing a released buffer of the same length if there is one
+     * @param int size the number of doubles
+     * @return OffHeapColumn the column, whose values are not cleared
+     */
+    public synchronized OffHeapColumn allocate(int size)
+    {
+        int bytes = Math.multiplyExact(size, Double.BYTES);
+        ArrayDeque<ByteBuffer> buffers = spare.get(bytes);
+        ByteBuffer buffer = buffers == null ? null : buffers.poll();
+        if (buffer == null){
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            allocatedBytes += bytes;
+        }
+        usedBytes += bytes;
+        return new OffHeapColumn(this, buffer, size);
+    }
+
+    /**
+     * Takes back the buffer of a released column
+     * @param ByteBuffer buffer the buffer
+     */
+    synchronized void release(ByteBuffer buffer)
+    {
+        int bytes = buffer.capacity();
+        usedBytes -= bytes;
+        ArrayDeque<ByteBuffer> buffers = spare.computeIfAbsent(bytes, capacity -> new ArrayDeque<>());
+        if (buffers.size() < MAX_SPARE_BUFFERS){
+            buffers.push(buffer);
+        }
+        else{
+            allocatedBytes -= bytes;
+        }
+    }
+
+    /**
+     * Drops the buffers of released columns, so their memory can be given back
+     */
+    public synchronized void trim()
+    {
+        for (ArrayDeque<ByteBuffer> buffers : spare.values()){
+            for (ByteBuffer buffer : buffers){
+                allocatedBytes -= buffer.capacity();
+            }
+        }
+        spare.clear();
+    }
+
+    /**
+     * Returns the bytes held by the arena, in use or spare
+     * @return long bytes
+     */
+    public synchronized long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the bytes of the columns that have not been released
+     * @return long bytes
+     */
+    public synchronized long getUsedBytes()
+    {
+        return usedBytes;
+    }
+}
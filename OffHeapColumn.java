@@ -0,0 +1,109 @@
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * A column of doubles stored outside the Java heap, handed out by an OffHeapArena.
+ *
+ * Values are read and written with absolute gets and puts on a native order view of the
+ * buffer, which HotSpot compiles to plain loads and stores. Once released the column gives
+ * its buffer back to the arena and must not be read again; reading it then throws an
+ * IllegalStateException rather than returning values that may belong to another dataset.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class OffHeapColumn
+{
+    private final OffHeapArena arena;
+    private final int size;
+    private volatile ByteBuffer buffer;
+    private volatile DoubleBuffer values;
+
+    /**
+     * Constructor for objects of class OffHeapColumn, used by OffHeapArena
+     * @param OffHeapArena arena the arena the buffer goes back to
+     * @param ByteBuffer buffer a direct buffer in native byte order
+     * @param int size the number of doubles in the column
+     */
+    OffHeapColumn(OffHeapArena arena, ByteBuffer buffer, int size)
+    {
+        this.arena = arena;
+        this.size = size;
+        this.buffer = buffer;
+        this.values = buffer.asDoubleBuffer();
+    }
+
+    /**
+     * Returns the number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the value at an index
+     * @param int index the index
+     * @return double the value
+     */
+    public double get(int index)
+    {
+        return getValues().get(index);
+    }
+
+    /**
+     * Copies values from an array into the column
+     * @param double[] source the values
+     * @param int length the number of values to copy, starting at index 0
+     */
+    public void copyFrom(double[] source, int length)
+    {
+        getValues().put(0, source, 0, length);
+    }
+
+    /**
+     * Copies the values into a new array
+     * @param int capacity the length of the array, at least size()
+     * @return double[] the values
+     */
+    public double[] toArray(int capacity)
+    {
+        double[] array = new double[capacity];
+        getValues().get(0, array, 0, size);
+        return array;
+    }
+
+    /**
+     * Returns the values as a buffer. Its position and limit must be left alone.
+     * @return DoubleBuffer the values
+     */
+    public DoubleBuffer getValues()
+    {
+        DoubleBuffer current = values;
+        if (current == null){
+            throw new IllegalStateException("The column has been released");
+        }
+        return current;
+    }
+
+    /**
+     * Gives the memory of the column back to its arena. Releasing twice does nothing.
+     */
+    public synchronized void release()
+    {
+        ByteBuffer released = buffer;
+        if (released != null){
+            values = null;
+            buffer = null;
+            arena.release(released);
+        }
+    }
+
+    /**
+     * Returns true once the column has been released
+     */
+    public boolean isReleased()
+    {
+        return buffer == null;
+    }
+}
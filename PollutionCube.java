@@ -0,0 +1,202 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A cube of every pollutant and year for every grid cell, laid out cell by cell so that
+ * all the values of one cell sit next to each other in memory.
+ *
+ * For cell c, pollutant p and year y the value is stored at
+ *
+ *     c * (pollutants * years) + p * years + y
+ *
+ * so reading the full profile of a cell is one lookup of the cell followed by a short
+ * run of neighbouring doubles. Values a dataset does not have are stored as -1.0, the
+ * same as unreadable values in a DataSet.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class PollutionCube
+{
+    public static final double MISSING_VALUE = -1.0;
+
+    private final GridGeometry geometry;
+    private final List<String> years;
+    private final List<String> pollutants;
+    private final int stride;
+    private final double[] values;
+
+    /**
+     * Constructor for objects of class PollutionCube
+     */
+    private PollutionCube(GridGeometry geometry, List<String> years, List<String> pollutants, double[] values)
+    {
+        this.geometry = geometry;
+        this.years = List.copyOf(years);
+        this.pollutants = List.copyOf(pollutants);
+        this.stride = years.size() * pollutants.size();
+        this.values = values;
+    }
+
+    /**
+     * Builds the cube from one dataset per pollutant and year. The cells are those of the
+     * geometry of the first dataset found; datasets on a different geometry are matched to
+     * them by gridcode. Rows whose gridcode is not a cell of the cube cannot be stored, and
+     * how many were left out of each dataset is reported.
+     * @param List<String> years the years, in the order they are stored
+     * @param List<String> pollutants the pollutants, in the order they are stored
+     * @param BiFunction sets returns the dataset for a year and pollutant, or null if there is none
+     * @return PollutionCube the cube, or null if there were no datasets at all
+     */
+    public static PollutionCube build(List<String> years, List<String> pollutants,
+                                      BiFunction<String, String, DataSet> sets)
+    {
+        DataSet[] dataSets = new DataSet[years.size() * pollutants.size()];
+        GridGeometry geometry = null;
+        for (int p = 0; p < pollutants.size(); p++){
+            for (int y = 0; y < years.size(); y++){
+                DataSet dataSet = sets.apply(years.get(y), pollutants.get(p));
+                dataSets[p * years.size() + y] = dataSet;
+                if (geometry == null && dataSet != null){
+                    geometry = dataSet.getGeometry();
+                }
+            }
+        }
+        if (geometry == null){
+            return null;
+        }
+
+        int stride = dataSets.length;
+        double[] values = new double[geometry.size() * stride];
+        Arrays.fill(values, MISSING_VALUE);
+        GridcodeIndex cells = null;
+        for (int slot = 0; slot < stride; slot++){
+            DataSet dataSet = dataSets[slot];
+            if (dataSet == null){
+                continue;
+            }
+            if (dataSet.getGeometry() == geometry){
+                // same grid, row i is cell i
+                for (int i = 0; i < dataSet.size(); i++){
+                    values[i * stride + slot] = dataSet.getValue(i);
+                }
+            }
+            else{
+                cells = cells == null ? geometry.getGridcodeIndex() : cells;
+                int dropped = 0;
+                for (int i = 0; i < dataSet.size(); i++){
+                    int cell = cells.indexOf(dataSet.getGridCode(i));
+                    if (cell != GridcodeIndex.MISSING){
+                        values[cell * stride + slot] = dataSet.getValue(i);
+                    }
+                    else{
+                        dropped++;
+                    }
+                }
+                if (dropped > 0){
+                    System.out.println(dropped + " of " + dataSet.size() + " cells of " + dataSet.getPollutant() + " "
+                                       + dataSet.getYear() + " are not on the grid of the other data and were left out");
+                }
+            }
+        }
+        return new PollutionCube(geometry, years, pollutants, values);
+    }
+
+    /**
+     * Returns the years of the cube in the order they are stored
+     */
+    public List<String> getYears()
+    {
+        return years;
+    }
+
+    /**
+     * Returns the pollutants of the cube in the order they are stored
+     */
+    public List<String> getPollutants()
+    {
+        return pollutants;
+    }
+
+    /**
+     * Returns the cell with a gridcode
+     * @param int gridCode the gridcode
+     * @return int the cell, or GridcodeIndex.MISSING if the cube has no such cell
+     */
+    public int cellOfGridCode(int gridCode)
+    {
+        return geometry.getGridcodeIndex().indexOf(gridCode);
+    }
+
+    /**
+     * Returns the cell at an easting/northing
+     * @param int x the easting
+     * @param int y the northing
+     * @return int the cell, or GridIndex.MISSING if the cube has no such cell
+     */
+    public int cellAt(int x, int y)
+    {
+        return geometry.getGridIndex().indexOf(x, y);
+    }
+
+    /**
+     * Returns one value of a cell
+     * @param int cell the cell
+     * @param int pollutant index of the pollutant in getPollutants()
+     * @param int year index of the year in getYears()
+     * @return double the value, or MISSING_VALUE
+     */
+    public double getValue(int cell, int pollutant, int year)
+    {
+        return values[cell * stride + pollutant * years.size() + year];
+    }
+
+    /**
+     * Copies every value of a cell into an array without creating any objects. Entry
+     * p * years + y of the array is set to the value of pollutant p in year y.
+     * @param int cell the cell
+     * @param double[] profile the array to fill, at least pollutants * years long
+     */
+    public void fillProfile(int cell, double[] profile)
+    {
+        System.arraycopy(values, cell * stride, profile, 0, stride);
+    }
+
+    /**
+     * Returns the profile of the cell with a gridcode
+     * @param int gridCode the gridcode
+     * @return CellProfile the profile, or null if the cube has no such cell
+     */
+    public CellProfile profileOfGridCode(int gridCode)
+    {
+        return profile(cellOfGridCode(gridCode));
+    }
+
+    /**
+     * Returns the profile of the cell at an easting/northing
+     * @param int x the easting
+     * @param int y the northing
+     * @return CellProfile the profile, or null if the cube has no such cell
+     */
+    public CellProfile profileAt(int x, int y)
+    {
+        return profile(cellAt(x, y));
+    }
+
+    /**
+     * Returns the profile of a cell
+     * @param int cell the cell, or a MISSING value
+     * @return CellProfile the profile, or null if the cell is missing
+     */
+    private CellProfile profile(int cell)
+    {
+        if (cell < 0){
+            return null;
+        }
+        double[] profile = new double[stride];
+        fillProfile(cell, profile);
+        return new CellProfile(geometry.getGridCode(cell), geometry.getX(cell), geometry.getY(cell),
+                               years, pollutants, profile);
+    }
+}
@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+/**
+ * The test class PollutionCubeTest contains unit tests for the cube holding every pollutant
+ * and year of every grid cell.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class PollutionCubeTest
+{
+    /**
+     * Default constructor for test class PollutionCubeTest
+     */
+    public PollutionCubeTest()
+    {
+    }
+
+    /**
+     * Test method for datasets on the same grid and on a different grid, whose rows are
+     * matched to the cells by gridcode and left out when the cube has no such cell.
+     */
+    @Test
+    public void testBuildMatchesCellsByGridCode()
+    {
+        DataSet first = new DataSet("NO2", "2022", "annual mean", "ug m-3");
+        first.addData(1, 500, 500, 10.0);
+        first.addData(2, 1500, 500, 11.0);
+        first.addData(3, 2500, 500, -1.0);
+        DataSet sameGrid = new DataSet("NO2", "2023", "annual mean", "ug m-3", first.getGeometry(),
+                                       new double[]{20.0, 21.0, 22.0});
+        // other rows in another order, with one cell the cube does not have
+        DataSet otherGrid = new DataSet("PM10", "2022", "annual mean", "ug m-3");
+        otherGrid.addData(3, 2500, 500, 32.0);
+        otherGrid.addData(9, 9500, 500, 39.0);
+        otherGrid.addData(1, 500, 500, 30.0);
+
+        PollutionCube cube = PollutionCube.build(List.of("2022", "2023"), List.of("no2", "pm10"), (year, type) -> {
+            if (type.equals("no2")){
+                return year.equals("2022") ? first : sameGrid;
+            }
+            return year.equals("2022") ? otherGrid : null;
+        });
+
+        CellProfile profile = cube.profileAt(500, 500);
+        assertEquals(1, profile.gridCode());
+        assertEquals(10.0, profile.getValue("no2", "2022"));
+        assertEquals(20.0, profile.getValue("no2", "2023"));
+        assertEquals(30.0, profile.getValue("pm10", "2022"));
+        assertEquals(PollutionCube.MISSING_VALUE, profile.getValue("pm10", "2023"));
+
+        CellProfile second = cube.profileOfGridCode(2);
+        assertEquals(PollutionCube.MISSING_VALUE, second.getValue("pm10", "2022"));
+        assertEquals(32.0, cube.profileOfGridCode(3).getValue("pm10", "2022"));
+        assertEquals(PollutionCube.MISSING_VALUE, cube.profileOfGridCode(3).getValue("no2", "2022"));
+        assertNull(cube.profileOfGridCode(9));
+        assertNull(cube.profileAt(9500, 500));
+    }
+
+    /**
+     * Test method for no dataset at all.
+     */
+    @Test
+    public void testBuildWithoutData()
+    {
+        assertNull(PollutionCube.build(List.of("2023"), List.of("no2"), (year, type) -> null));
+    }
+
+    /**
+     * Test method for the repository only handing out a cube built for its current data
+     * when asked without building.
+     */
+    @Test
+    public void testPeekCube() throws Exception
+    {
+        TestDataFolder folder = TestDataFolder.create("PollutionCubeTestData");
+        try {
+            DataRepository repository = folder.repository();
+            assertNull(repository.peekCube());
+
+            PollutionCube cube = repository.getCube();
+            assertNotNull(cube);
+            assertSame(cube, repository.peekCube());
+            assertEquals(TestDataFolder.YEARS, cube.getYears());
+            CellProfile profile = cube.profileAt(1500, 2500);
+            assertEquals(100041, profile.gridCode());
+            assertTrue(profile.getValue("pm2.5", "2023") >= 0);
+
+            // a rewritten file makes the cube out of date until it is built again
+            repository.reloadFile(folder.write("NO2", "2023", 99));
+            assertNull(repository.peekCube());
+            PollutionCube rebuilt = repository.getCube();
+            assertNotSame(cube, rebuilt);
+            assertNotEquals(profile.getValue("no2", "2023"), rebuilt.profileAt(1500, 2500).getValue("no2", "2023"));
+            assertEquals(profile.getValue("pm10", "2022"), rebuilt.profileAt(1500, 2500).getValue("pm10", "2022"));
+        }
+        finally {
+            folder.delete();
+        }
+    }
+}
@@ -38,8 +38,6 @@ public class PollutionFilter
     {
         //Type of data 
         String pollutant = dataSet.getPollutant();
-        //Data concerned
-        List<DataPoint> dataList = dataSet.getData();
         //Canvas attributes
         GraphicsContext g = currentCanvas.getGraphicsContext2D();
         g.setGlobalAlpha(0.16); //opacity
@@ -61,11 +59,12 @@ public class PollutionFilter
     
         String year = dataSet.getYear();
 
-        for (DataPoint point : dataList){
-            double x = (point.x() - map_left) * xScale;
-            double y = (point.y() - map_top) * yScale;
+        //Scan the dataset columns, only points that end up on the canvas become DataPoint objects
+        for (int i = 0; i < dataSet.size(); i++){
+            double x = (dataSet.getX(i) - map_left) * xScale;
+            double y = (dataSet.getY(i) - map_top) * yScale;
             if((x >= -50 && x < mapWidth + 50) && (y >= -50 && y < mapHeight + 50)){
-                addMarker(x,y,pollutant,point,g,year, filters);
+                addMarker(x,y,pollutant,dataSet.getDataPoint(i),g,year, filters);
             }
         }
         
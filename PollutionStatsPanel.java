@@ -1,21 +1,25 @@
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * PollutionStatsPanel is responsible for the pollution stats panel UI.
  * It calculates average and highest pollution data by the specific 
  * pollutant, region and year.
- * It also allows users to compare pollution across 2 different locations.
+ * It also allows users to compare pollution across 2 different locations,
+ * and to rank all regions in a league table.
  * 
  *
  * @author Yousef Omer-Hashi
  * @version 1.0
  */
 public class PollutionStatsPanel extends VBox {
+    private static final List<String> LEAGUE_POLLUTANTS = List.of("NO2", "PM10", "PM2.5");
     private DataRepository dataRepository;
     private ComboBox<String> yearSelector;
     private ComboBox<String> pollutantSelector;
@@ -28,6 +32,11 @@ public class PollutionStatsPanel extends VBox {
     private Statistics stats;
     private Region currentRegion;
     private RegionManager regionManager;
+    private boolean statisticsShown; // true once statistics have been calculated
+    private ComparisonMatrix leagueMatrix; // averages of every region, for the league table
+    private VBox leagueTable;
+    private int compareCount; // number of comparisons requested, used to drop the results of older ones
+    private int rankCount; // number of rankings requested, used to drop the results of older ones
 
     public PollutionStatsPanel(DataRepository dataRepository, Region currentRegion,RegionManager regionManager) {
         this.dataRepository = dataRepository;
@@ -64,8 +73,10 @@ public class PollutionStatsPanel extends VBox {
 
         //year selector to choose year
         yearSelector = new ComboBox<>();
-        yearSelector.getItems().addAll("2018", "2019", "2020", "2021", "2022", "2023");
-        yearSelector.setValue("2018");
+        List<String> years = dataRepository.getYears(); //years there are data files for
+        String latestYear = years.isEmpty() ? null : years.get(years.size() - 1);
+        yearSelector.getItems().addAll(years);
+        yearSelector.setValue(years.isEmpty() ? null : years.get(0));
 
         //pollutant selector to choose pollutant
         pollutantSelector = new ComboBox<>();
@@ -101,8 +112,7 @@ public class PollutionStatsPanel extends VBox {
         Label comparisonTitle = new Label("Compare Pollution Between \nTwo Locations");
         comparisonTitle.setId("titleLabel");
 
-        //list of years, zones, and regions to compare
-        List<String> years = List.of("2018", "2019", "2020", "2021", "2022", "2023");
+        //list of zones and regions to compare, for the years above
         List<String> zones = List.of("All Zones", "North", "West", "East", "South",
         "Northeast", "Northwest", "Southeast", "Southwest", "Central");
         
@@ -118,7 +128,7 @@ public class PollutionStatsPanel extends VBox {
         zoneComparisonSelector1.getItems().addAll(zones); 
         zoneComparisonSelector1.setValue("All Zones");
         yearComparisonSelector1.getItems().addAll(years); 
-        yearComparisonSelector1.setValue("2023");
+        yearComparisonSelector1.setValue(latestYear);
         Label no2Label1 = new Label("NO2: -");
         Label pm10Label1 = new Label("PM10: -");
         Label pm25Label1 = new Label("PM2.5: -");
@@ -142,7 +152,7 @@ public class PollutionStatsPanel extends VBox {
         zoneComparisonSelector2.getItems().addAll(zones); 
         zoneComparisonSelector2.setValue("All Zones");
         yearComparisonSelector2.getItems().addAll(years); 
-        yearComparisonSelector2.setValue("2023");
+        yearComparisonSelector2.setValue(latestYear);
         Label no2Label2 = new Label("NO2: -");
         Label pm10Label2 = new Label("PM10: -");
         Label pm25Label2 = new Label("PM2.5: -");
@@ -174,19 +184,28 @@ public class PollutionStatsPanel extends VBox {
             Region region1 = regionManager.getRegion(regionSelector1.getValue());
             Region region2 = regionManager.getRegion(regionSelector2.getValue());
         
-            //compare pollutants between 2 locations
-            HashMap<String, ComparisonResult> results = ComparisonLogic.comparePollutants(
-            region1, zone1, year1, region2, zone2, year2, dataRepository);
-            
-            //retrieve comparison result for each pollutant
-            ComparisonResult no2Result = results.get("NO2");
-            ComparisonResult pm10Result = results.get("PM10");
-            ComparisonResult pm25Result = results.get("PM2.5");
-            
-            //update labels with the comparison result and color coding
-            updateLabelWithColor(no2Label1, no2Label2, no2Result, "NO2");
-            updateLabelWithColor(pm10Label1, pm10Label2, pm10Result, "PM10");
-            updateLabelWithColor(pm25Label1, pm25Label2, pm25Result, "PM2.5");
+            //compare pollutants between 2 locations away from the JavaFX thread, since the data may still be loading
+            int comparison = ++compareCount;
+            CompletableFuture.supplyAsync(() -> ComparisonLogic.comparePollutants(
+            region1, zone1, year1, region2, zone2, year2, dataRepository))
+            .thenAccept(results -> Platform.runLater(() -> {
+                if (comparison != compareCount) {
+                    return; // a newer comparison has replaced this one
+                }
+                //retrieve comparison result for each pollutant
+                ComparisonResult no2Result = results.get("NO2");
+                ComparisonResult pm10Result = results.get("PM10");
+                ComparisonResult pm25Result = results.get("PM2.5");
+                
+                //update labels with the comparison result and color coding
+                updateLabelWithColor(no2Label1, no2Label2, no2Result, "NO2");
+                updateLabelWithColor(pm10Label1, pm10Label2, pm10Result, "PM10");
+                updateLabelWithColor(pm25Label1, pm25Label2, pm25Result, "PM2.5");
+            })).exceptionally(ex -> {
+                System.out.println("Could not compare locations");
+                ex.printStackTrace();
+                return null;
+            });
         });
         
         // create a Vbox to include all elements of the comparison section
@@ -195,12 +214,51 @@ public class PollutionStatsPanel extends VBox {
         comparisonSection.setMaxWidth(300);
         comparisonSection.setTranslateX(-13);
         
+        //League Table Section
+        Label leagueTitle = new Label("League Table of All Regions");
+        leagueTitle.setId("titleLabel");
+        ComboBox<String> leagueYearSelector = new ComboBox<>();
+        leagueYearSelector.getItems().addAll(years);
+        leagueYearSelector.setValue(latestYear);
+        ComboBox<String> leaguePollutantSelector = new ComboBox<>();
+        leaguePollutantSelector.getItems().addAll("NO2", "PM10", "PM2.5");
+        leaguePollutantSelector.setValue("NO2");
+        leagueTable = new VBox(3);
+        
+        //compares every region on all pollutants at once, changing the pollutant only ranks them again
+        Button rankButton = new Button("Rank regions");
+        rankButton.setOnAction(e -> {
+            int ranking = ++rankCount;
+            List<ComparisonEngine.Selection> selections = regionSelections(leagueYearSelector.getValue());
+            leagueTable.getChildren().setAll(new Label("Ranking regions..."));
+            //compares away from the JavaFX thread, since every region's data may have to be loaded
+            CompletableFuture.supplyAsync(() -> new ComparisonEngine().compare(dataRepository, selections, LEAGUE_POLLUTANTS))
+            .thenAccept(matrix -> Platform.runLater(() -> {
+                if (ranking != rankCount) {
+                    return; // a newer ranking has replaced this one
+                }
+                leagueMatrix = matrix;
+                showLeagueTable(leaguePollutantSelector.getValue());
+            })).exceptionally(ex -> {
+                System.out.println("Could not rank regions");
+                ex.printStackTrace();
+                return null;
+            });
+        });
+        leaguePollutantSelector.setOnAction(e -> showLeagueTable(leaguePollutantSelector.getValue()));
+        
+        VBox leagueSection = new VBox(10, leagueTitle,
+        new Label("Year:"), leagueYearSelector,
+        new Label("Pollutant:"), leaguePollutantSelector,
+        rankButton, leagueTable);
+        leagueSection.setPadding(new Insets(10));
+        
         //add all UI elements to the stats panel
         getChildren().addAll(caluclateTitle,new Label("Select Year:"), yearSelector,
                              new Label("Select Pollutant:"), pollutantSelector, 
                              new Label("Select Zone"), zoneSelector,
                              calculateButton, avgPollutionLabel, 
-                             highestPollutionLabel, locationLabel, comparisonSection);  
+                             highestPollutionLabel, locationLabel, comparisonSection, leagueSection);  
     
     }
     
@@ -213,16 +271,17 @@ public class PollutionStatsPanel extends VBox {
      * @param pollutant name of the pollutant being compared
      */
     private void updateLabelWithColor(Label label1, Label label2, ComparisonResult result, String pollutant) {
-        String formatted1 = String.format("%s: %.1f %s", pollutant, result.getAvg1(), result.getUnits());
-        String formatted2 = String.format("%s: %.1f %s", pollutant, result.getAvg2(), result.getUnits());
-    
-        label1.setText(formatted1);
-        label2.setText(formatted2);
+        label1.setText(formatAverage(pollutant, result.getAvg1(), result.getUnits()));
+        label2.setText(formatAverage(pollutant, result.getAvg2(), result.getUnits()));
     
         //applies color based on which value is higher
         //green for lower pollution
         //red for higher pollution
-        if (result.getAvg1() < result.getAvg2()) {
+        //grey if they are equal or one of them has no data
+        if (Double.isNaN(result.getAvg1()) || Double.isNaN(result.getAvg2())) {
+            label1.setStyle("-fx-text-fill: grey;");
+            label2.setStyle("-fx-text-fill: grey;");
+        } else if (result.getAvg1() < result.getAvg2()) {
             label1.setStyle("-fx-text-fill: green;");
             label2.setStyle("-fx-text-fill: red;");
         } else if (result.getAvg1() > result.getAvg2()) {
@@ -233,6 +292,71 @@ public class PollutionStatsPanel extends VBox {
             label2.setStyle("-fx-text-fill: grey;");
         }
     }
+    
+    /**
+     * Formats the average of a pollutant for a comparison label.
+     * 
+     * @param pollutant name of the pollutant
+     * @param average the average, or NaN if there is no data
+     * @param units the units of the pollutant
+     * @return the text of the label
+     */
+    private String formatAverage(String pollutant, double average, String units) {
+        if (Double.isNaN(average)) {
+            return pollutant + ": no data";
+        }
+        return String.format("%s: %.1f %s", pollutant, average, units);
+    }
+
+    /**
+     * Returns the whole of every region in a year, to be compared on all pollutants.
+     * 
+     * @param year the year to compare
+     * @return a selection for every region
+     */
+    private List<ComparisonEngine.Selection> regionSelections(String year) {
+        List<ComparisonEngine.Selection> selections = new ArrayList<>();
+        for (int i = 0; i < regionManager.getRegionAmount(); i++) {
+            Region region = regionManager.getRegionIndex(i);
+            selections.add(new ComparisonEngine.Selection(region.getRegionName(), region, "All Zones", year));
+        }
+        return selections;
+    }
+    
+    /**
+     * Shows the regions ranked by a pollutant, the least polluted first.
+     * 
+     * @param pollutant the pollutant to rank the regions by
+     */
+    private void showLeagueTable(String pollutant) {
+        leagueTable.getChildren().clear();
+        if (leagueMatrix == null) {
+            return; //nothing has been compared yet
+        }
+        List<ComparisonMatrix.Standing> standings = leagueMatrix.rank(pollutant);
+        if (standings.isEmpty()) {
+            leagueTable.getChildren().add(new Label("No data available for selected year and pollutant"));
+            return;
+        }
+        for (ComparisonMatrix.Standing standing : standings) {
+            leagueTable.getChildren().add(new Label(String.format("%d. %s: %.1f %s",
+                standing.rank(), standing.name(), standing.average(), standing.units())));
+        }
+    }
+
+    /**
+     * Calculates the statistics again if the ones shown are for the given year and pollutant,
+     * for example after their data file has been reloaded.
+     * 
+     * @param year the year of the data that changed
+     * @param pollutant the pollutant of the data that changed
+     */
+    public void refreshStatistics(String year, String pollutant) {
+        if (statisticsShown && year.equals(yearSelector.getValue())
+                && pollutant.equalsIgnoreCase(pollutantSelector.getValue())) {
+            calculatestatistics();
+        }
+    }
 
     /**
      * Displays the statistics for selected pollutant
@@ -243,37 +367,49 @@ public class PollutionStatsPanel extends VBox {
     private void calculatestatistics() {
         String year = yearSelector.getValue();
         String pollutant = pollutantSelector.getValue();
+        String selectedZone = zoneSelector.getValue();
+        statisticsShown = true;
         
-        DataSet dataSet = dataRepository.locateSet(year, pollutant);
-        if (dataSet == null) {
-            avgPollutionLabel.setText("No data available for selected year and pollutant");
-            highestPollutionLabel.setText("");
-            return;
+        DataPoint highestPoint;
+        double avgPollution;
+        String units;
+        RepositorySnapshot data = dataRepository.snapshot();
+        AggregateCube cube = dataRepository.getAggregateCube(data);
+        AggregateCube.Aggregate aggregate = cube == null ? null : cube.get(currentRegion, selectedZone, year, pollutant);
+        if (aggregate != null) {
+            //Look the statistics up in the aggregate cube
+            highestPoint = aggregate.highest();
+            avgPollution = aggregate.average();
+            units = aggregate.units();
+        }
+        else {
+            DataSet dataSet = data.acquireSet(year, pollutant);
+            if (dataSet == null) {
+                avgPollutionLabel.setText("No data available for selected year and pollutant");
+                highestPollutionLabel.setText("");
+                return;
+            }
+            
+            //Until the cube is built, totals of every zone come from one scan of the dataset, kept for switching zones
+            try {
+                ZoneTotals totals = stats.aggregateZones(dataSet);
+                int zone = Statistics.zoneId(selectedZone);
+                highestPoint = totals.getHighest(zone);
+                avgPollution = totals.getAverage(zone);
+                units = dataSet.getUnits();
+            }
+            finally {
+                dataSet.release();
+            }
         }
-
-
-        //Filters out data points within zone boundaries
-        List<DataPoint> dataPoints = stats.filterDataWithinZone(dataSet.getData());
-        
-        //Filter data points by the selected zone
-        String selectedZone = zoneSelector.getValue();
-        dataPoints = stats.filterByZone(dataPoints, selectedZone);
         
-        if (dataPoints.isEmpty()) {
+        if (highestPoint == null) {
             avgPollutionLabel.setText("No data points found within " + currentRegion.getRegionName());
             highestPollutionLabel.setText("");
             return;
         }
-
-        double total = 0;
-        
-        DataPoint highestPoint = null;
-
-
-        double avgPollution = stats.calculateAvgPollution(dataPoints);
-        highestPoint = stats.getHighestPollution(dataPoints);
         
-        avgPollutionLabel.setText(String.format("Average Pollution: \n %.2f %s", avgPollution, dataSet.getUnits()));
+        avgPollutionLabel.setText(String.format("Average Pollution: \n %.2f %s", avgPollution, units));
 
         if (highestPoint != null) {
             highestPollutionLabel.setText(String.format("Highest Pollution: \n %.2f at Grid (%d, %d) ",
@@ -0,0 +1,194 @@
+/**
+ * The value column of a dataset stored as 16-bit fixed-point codes instead of doubles,
+ * which takes a quarter of the memory.
+ *
+ * A value v is stored as the code round((v - offset) / scale), where offset is the lowest
+ * value of the dataset and scale spreads the range of values over the codes 0 to 65534.
+ * Decoding gives offset + code * scale, which is never further than scale / 2 from the
+ * value that was stored (see getMaxError()). The code 65535 is reserved for missing
+ * values, which are any negative value (a DataSet holds -1.0 for values it could not read)
+ * or NaN, and decodes back to -1.0.
+ *
+ * Sums and maximums can be worked out on the codes and only converted back once at the
+ * end, since decoding is linear. The missing code is the highest code of all, so it must
+ * be skipped before codes are compared or added up.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class QuantizedValues
+{
+    public static final int MISSING_CODE = 0xFFFF;
+    public static final double MISSING_VALUE = -1.0;
+    private static final int MAX_CODE = MISSING_CODE - 1;
+
+    private final short[] codes;
+    private final double offset;
+    private final double scale;
+    private final int size;
+
+    /**
+     * Constructor for objects of class QuantizedValues
+     */
+    private QuantizedValues(short[] codes, double offset, double scale, int size)
+    {
+        this.codes = codes;
+        this.offset = offset;
+        this.scale = scale;
+        this.size = size;
+    }
+
+    /**
+     * Encodes the first size values of a column
+     * @param double[] values the values, where a negative value or NaN means missing
+     * @param int size the number of values to encode
+     * @return QuantizedValues the encoded values
+     */
+    public static QuantizedValues encode(double[] values, int size)
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++){
+            double value = values[i];
+            if (!isMissing(value)){
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        if (min > max){
+            // every value is missing
+            min = 0;
+            max = 0;
+        }
+        double offset = min;
+        double scale = max > min ? (max - min) / MAX_CODE : 1.0;
+
+        short[] codes = new short[size];
+        for (int i = 0; i < size; i++){
+            double value = values[i];
+            int code = isMissing(value) ? MISSING_CODE : (int) Math.round((value - offset) / scale);
+            codes[i] = (short) code;
+        }
+        return new QuantizedValues(codes, offset, scale, size);
+    }
+
+    /**
+     * Returns true if a value is missing, which is any negative value or NaN
+     * @param double value the value
+     * @return boolean true or false
+     */
+    public static boolean isMissing(double value)
+    {
+        return value < 0 || Double.isNaN(value);
+    }
+
+    /**
+     * Returns the number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the code of the value at an index, from 0 to MISSING_CODE
+     */
+    public int getCode(int index)
+    {
+        return codes[index] & 0xFFFF;
+    }
+
+    /**
+     * Returns the value at an index
+     * @param int index the index
+     * @return double the decoded value, or -1.0 if it is missing
+     */
+    public double decode(int index)
+    {
+        return decodeCode(codes[index] & 0xFFFF);
+    }
+
+    /**
+     * Returns the value a code stands for
+     * @param int code the code
+     * @return double the decoded value, or -1.0 for MISSING_CODE
+     */
+    public double decodeCode(int code)
+    {
+        return code == MISSING_CODE ? MISSING_VALUE : offset + code * scale;
+    }
+
+    /**
+     * Returns the value a sum of codes which are not missing stands for. Used to total
+     * values without decoding each one.
+     * @param long codeSum the sum of the codes
+     * @param int count the number of codes summed
+     * @return double the sum of the values
+     */
+    public double decodeSum(long codeSum, int count)
+    {
+        return offset * count + codeSum * scale;
+    }
+
+    /**
+     * Returns the value a sum of squared codes which are not missing stands for, which is
+     * the sum of the squares of the values. Used for the variance.
+     * @param long codeSum the sum of the codes
+     * @param long codeSquareSum the sum of the squares of the codes
+     * @param int count the number of codes summed
+     * @return double the sum of the squares of the values
+     */
+    public double decodeSumOfSquares(long codeSum, long codeSquareSum, int count)
+    {
+        // (offset + code * scale)^2 summed over the codes
+        return offset * offset * count + 2 * offset * scale * codeSum + scale * scale * codeSquareSum;
+    }
+
+    /**
+     * Returns the lowest value that can be stored, which code 0 stands for
+     */
+    public double getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the difference between the values of neighbouring codes
+     */
+    public double getScale()
+    {
+        return scale;
+    }
+
+    /**
+     * Returns the largest difference between a value and its decoded value
+     * @return double half the scale
+     */
+    public double getMaxError()
+    {
+        return scale / 2;
+    }
+
+    /**
+     * Decodes all values into a new double column
+     * @param int capacity the length of the column, at least size()
+     * @return double[] the decoded values
+     */
+    public double[] decodeAll(int capacity)
+    {
+        double[] values = new double[capacity];
+        for (int i = 0; i < size; i++){
+            values[i] = decode(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the estimated bytes used by the codes
+     * @return long bytes
+     */
+    public long estimateBytes()
+    {
+        return (long) codes.length * Short.BYTES;
+    }
+}
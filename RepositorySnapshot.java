@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One version of what a DataRepository holds: the source of every dataset and the years
+ * and types of data on offer. A snapshot never changes. The repository publishes a new one,
+ * with a higher version, whenever a source is registered or a data file is reloaded, so a
+ * render or a calculation that keeps hold of one snapshot sees the same data throughout
+ * even if files change while it runs.
+ *
+ * Each source carries the version of the snapshot it was registered in. Datasets are cached
+ * under their key together with that version, so a reloaded file is cached as a new entry
+ * rather than overwriting the dataset readers of an older snapshot may still be using, and
+ * caches built from datasets can tell they are out of date by the version alone.
+ *
+ * Each source also carries the fingerprint its data had when it was registered. If the cache
+ * has dropped a dataset of an older snapshot and its file has been rewritten since, loading it
+ * again would give the new data under the old version, so the dataset is reported as changed
+ * and the snapshot gives null for it instead. Every dataset read through a snapshot is
+ * therefore of that snapshot's version, or not there at all.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class RepositorySnapshot
+{
+    /**
+     * The source of a dataset, the version of the snapshot it was registered in and the
+     * fingerprint of its data at that time
+     */
+    public record Source(DataSource source, long version, String fingerprint)
+    {
+        /**
+         * Returns the source of a version, with the fingerprint its data has now
+         * @param DataSource source the source
+         * @param long version the version
+         * @return Source the source
+         */
+        static Source of(DataSource source, long version)
+        {
+            return new Source(source, version, source.getFingerprint());
+        }
+
+        /**
+         * Returns true if the source would still load the data it had when it was registered.
+         * A source that cannot tell when its data changes is taken to be unchanged.
+         * @return boolean true or false
+         */
+        public boolean isUnchanged()
+        {
+            return fingerprint == null || fingerprint.equals(source.getFingerprint());
+        }
+    }
+
+    private final DataRepository repository;
+    private final long version;
+    // sources by type/year
+    private final Map<String, Source> sources;
+    private final List<String> years;
+    private final List<String> types;
+    private final Map<String, List<String>> yearsByType;
+
+    /**
+     * Constructor for objects of class RepositorySnapshot
+     */
+    private RepositorySnapshot(DataRepository repository, long version, Map<String, Source> sources,
+                               DataCatalog catalog)
+    {
+        this.repository = repository;
+        this.version = version;
+        this.sources = Collections.unmodifiableMap(sources);
+        this.years = List.copyOf(catalog.getYears());
+        this.types = List.copyOf(catalog.getTypes());
+        Map<String, List<String>> byType = new HashMap<>();
+        for (String type : types){
+            byType.put(type, List.copyOf(catalog.getYears(type)));
+        }
+        this.yearsByType = Collections.unmodifiableMap(byType);
+    }
+
+    /**
+     * Creates the first snapshot of a repository, version 1
+     * @param DataRepository repository the repository datasets are loaded through
+     * @param Map<String, DataSource> sources the sources by type/year
+     * @param DataCatalog catalog the catalog the years and types come from
+     * @return RepositorySnapshot the snapshot
+     */
+    static RepositorySnapshot create(DataRepository repository, Map<String, DataSource> sources, DataCatalog catalog)
+    {
+        Map<String, Source> versioned = new HashMap<>();
+        for (Map.Entry<String, DataSource> entry : sources.entrySet()){
+            versioned.put(entry.getKey(), Source.of(entry.getValue(), 1));
+        }
+        return new RepositorySnapshot(repository, 1, versioned, catalog);
+    }
+
+    /**
+     * Returns the next version of this snapshot, in which some sources are replaced. The
+     * years and types are read from the catalog again.
+     * @param Map<String, DataSource> changed the new sources by type/year
+     * @param DataCatalog catalog the catalog the years and types come from
+     * @return RepositorySnapshot the new snapshot
+     */
+    RepositorySnapshot withSources(Map<String, DataSource> changed, DataCatalog catalog)
+    {
+        long next = version + 1;
+        // copy on write: this snapshot's map is left as it is
+        Map<String, Source> updated = new HashMap<>(sources);
+        for (Map.Entry<String, DataSource> entry : changed.entrySet()){
+            updated.put(entry.getKey(), Source.of(entry.getValue(), next));
+        }
+        return new RepositorySnapshot(repository, next, updated, catalog);
+    }
+
+    /**
+     * Returns the version of this snapshot. Later snapshots have higher versions.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the years there is data for, of any type
+     * @return List<String> years in ascending order
+     */
+    public List<String> getYears()
+    {
+        return years;
+    }
+
+    /**
+     * Returns the years there is data for of one type
+     * @param String type the type of data
+     * @return List<String> years in ascending order
+     */
+    public List<String> getYears(String type)
+    {
+        return yearsByType.getOrDefault(type.toLowerCase().trim(), List.of());
+    }
+
+    /**
+     * Returns the types of data there are files for
+     * @return List<String> lower case types in alphabetical order
+     */
+    public List<String> getTypes()
+    {
+        return types;
+    }
+
+    /**
+     * Returns the source of a dataset in this snapshot
+     * @param String key the key of the dataset in the form type/year
+     * @return Source the source and its version, or null if there is none
+     */
+    public Source getSource(String key)
+    {
+        return sources.get(key);
+    }
+
+    /**
+     * Locates the dataset of this snapshot for a year and type, loading it if it is not loaded yet.
+     * An off-heap dataset the cache evicts can be released while it is read, so a caller that
+     * reads the values should use acquireSet instead.
+     * @param String year the year, or "live"
+     * @param String type the type of data
+     * @return DataSet the dataset, or null if there is none or its data has changed since this snapshot
+     */
+    public DataSet locateSet(String year, String type)
+    {
+        if (year == null){
+            return null;
+        }
+        String key = DataRepository.key(year, type.toLowerCase().trim());
+        Source source = sources.get(key);
+        return source == null ? null : repository.locate(key, source);
+    }
+
+    /**
+     * Locates the dataset of this snapshot for a year and type as locateSet does and acquires it,
+     * so that it stays readable even if the cache evicts it meanwhile. The caller must release
+     * it once done reading.
+     * @param String year the year, or "live"
+     * @param String type the type of data
+     * @return DataSet the acquired dataset, or null if there is none or its data has changed since this snapshot
+     */
+    public DataSet acquireSet(String year, String type)
+    {
+        if (year == null){
+            return null;
+        }
+        String key = DataRepository.key(year, type.toLowerCase().trim());
+        Source source = sources.get(key);
+        return source == null ? null : repository.acquire(key, source);
+    }
+
+    /**
+     * Returns true if the dataset of this snapshot for a year and type is loaded
+     * @param String year the year, or "live"
+     * @param String type the type of data
+     * @return boolean true or false
+     */
+    public boolean isLoaded(String year, String type)
+    {
+        String key = DataRepository.key(year, type.toLowerCase().trim());
+        Source source = sources.get(key);
+        return source != null && repository.isLoaded(key, source);
+    }
+
+    /**
+     * Loads the datasets of this snapshot for every combination of the given years and types
+     * which are not loaded yet, at the same time on the repository's loader pool, and waits
+     * for all of them
+     * @param List<String> years the years to load
+     * @param String... types the types of data to load
+     */
+    public void prefetch(List<String> years, String... types)
+    {
+        List<String[]> wanted = new ArrayList<>();
+        for (String type : types){
+            for (String year : years){
+                if (!isLoaded(year, type)){
+                    wanted.add(new String[]{year, type});
+                }
+            }
+        }
+        repository.loadInParallel(this, wanted);
+    }
+}
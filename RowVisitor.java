@@ -0,0 +1,22 @@
+/**
+ * Receives the data rows of a DEFRA file one at a time as DataLoader.streamDataFile parses
+ * them. The values of a row are passed as primitives and nothing is kept once the call
+ * returns, so a visitor that only aggregates runs in constant memory.
+ *
+ * Like DataSet.addData, a column that is not a readable number is passed as -1.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+@FunctionalInterface
+public interface RowVisitor
+{
+    /**
+     * Called for each data row of the file, in file order
+     * @param int gridCode the gridcode
+     * @param int x the easting
+     * @param int y the northing
+     * @param double value the value
+     */
+    void visit(int gridCode, int x, int y, double value);
+}
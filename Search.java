@@ -72,8 +72,10 @@ abstract public class Search
     private void createComboBoxes()
     {
         this.yearSelector = new ComboBox<>();
-        yearSelector.getItems().addAll("2018", "2019", "2020", "2021", "2022", "2023");
-        yearSelector.setValue("2018");
+        // The years come from the data files that were found
+        List<String> years = repo.getYears();
+        yearSelector.getItems().addAll(years);
+        yearSelector.setValue(years.isEmpty() ? null : years.get(0));
 
         this.pollutantSelector = new ComboBox<>();
         pollutantSelector.getItems().addAll("NO2", "PM10", "PM2.5");
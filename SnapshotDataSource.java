@@ -0,0 +1,75 @@
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A dataset read from the binary snapshot of a csv file (see DataSetSnapshot). When there
+ * is no up to date snapshot the csv file is parsed instead and a snapshot is written for
+ * the next load.
+ *
+ * @author Ali Demir and Ozgur Dorunay
+ * @version 24/03/25
+ */
+public class SnapshotDataSource implements DataSource
+{
+    private final CsvDataSource csv;
+
+    /**
+     * Constructor for objects of class SnapshotDataSource
+     * @param CsvDataSource csv the csv file the snapshot is made from
+     */
+    public SnapshotDataSource(CsvDataSource csv)
+    {
+        this.csv = csv;
+    }
+
+    /**
+     * Starts reading the snapshot, or parsing the csv file if the snapshot is missing or out of date
+     * @param Executor executor runs the load
+     * @return CompletableFuture<DataSet> completes with the dataset, or with null if the file could not be read
+     */
+    public CompletableFuture<DataSet> load(Executor executor)
+    {
+        return CompletableFuture.supplyAsync(this::read, executor);
+    }
+
+    /**
+     * Returns the name of the csv file
+     */
+    public String getName()
+    {
+        return "snapshot of " + csv.getName();
+    }
+
+    /**
+     * Returns the fingerprint of the csv file, since the snapshot holds the same data
+     */
+    public String getFingerprint()
+    {
+        return csv.getFingerprint();
+    }
+
+    /**
+     * Reads the snapshot or parses the csv file on the current thread
+     * @return DataSet the dataset, or null if the file could not be read
+     */
+    private DataSet read()
+    {
+        long start = System.nanoTime();
+        Path source = new DataLoader().resolvePath(csv.getName());
+        if (source == null){
+            System.out.println("Could not read file " + csv.getName());
+            return null;
+        }
+        DataSet dataSet = DataSetSnapshot.read(source);
+        if (dataSet != null){
+            System.out.println("Loaded " + getName() + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return dataSet;
+        }
+        dataSet = csv.parse();
+        if (dataSet != null){
+            DataSetSnapshot.write(dataSet, source);
+        }
+        return dataSet;
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 /**
  * The Statistic class handles operations related to pollution data
@@ -13,11 +15,21 @@ import java.util.stream.Collectors;
  */
 public class Statistics
 {
+    // The zones in order of their ids
+    public static final List<String> ZONES = List.of("Northwest", "North", "Northeast", "West", "Central",
+                                                     "East", "Southwest", "South", "Southeast");
+    // Id of the whole region, after the nine zones
+    public static final int ALL_ZONES = 9;
+    // Id of a point outside the region
+    public static final int OUTSIDE = -1;
+    
     // Region Boundaries
     private int easting_min;
     private int easting_max;
     private int northing_min;
     private int northing_max;
+    // Totals of the datasets aggregated so far, dropped when a dataset is no longer used
+    private final Map<DataSet, ZoneTotals> zoneTotals = new WeakHashMap<>();
 
     public Statistics(Region currentRegion)
     {
@@ -30,7 +42,7 @@ public class Statistics
     
     /**
      * Calculates and returns average pollution value of data points within the region.
-     * 
+     * Missing values (stored as -1) are left out.
      * 
      * @param dataPoints list of DataPoint objects containing pollution data
      * @return  average pollution value or 0 if no data points are in the region
@@ -40,16 +52,17 @@ public class Statistics
         double total = 0;
         int count = 0; // Counts datapoints in region
         for (DataPoint point : dataPoints) {
-            if(isInZone(point.x(),point.y())){
+            if(isInZone(point.x(),point.y()) && point.value() >= 0){
                 total += point.value();
                 count += 1;
         }
         }
-        return total/count;
+        return count == 0 ? 0 : total/count;
     }
     
     /**
      * Finds data point with  highest pollution value in the region.
+     * Missing values (stored as -1) are left out.
      * 
      * @param dataPoints a list of DataPoint objects containing pollution data
      * @return the DataPoint with the highest pollution value, or null if no valid data points
@@ -58,7 +71,7 @@ public class Statistics
         if (dataPoints.isEmpty()) return null; //return null if the list is empty
         DataPoint highestPoint = null;
         for (DataPoint point: dataPoints) {
-            if(isInZone(point.x(),point.y())){ //check if point is inside region
+            if(isInZone(point.x(),point.y()) && point.value() >= 0){ //check if point is inside region and has a value
                 if (highestPoint == null || point.value() > highestPoint.value()) {
                     highestPoint = point; //sets this point as the highest point
                 }
@@ -67,6 +80,171 @@ public class Statistics
         return highestPoint;
     }
     
+    /**
+     * Starts a query on a dataset, over the whole region until it is narrowed down. The query
+     * works out several aggregates in one go without creating lists of points, for example
+     * query(dataSet).zone("North").aggregate(Aggregate.AVG, Aggregate.MAX).
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @return the query
+     */
+    public StatisticsQuery query(DataSet dataSet) {
+        return new StatisticsQuery(dataSet, this, easting_min, easting_max, northing_min, northing_max);
+    }
+    
+    /**
+     * Calculates the average pollution of the data points in a dataset that lie inside the region
+     * and the given zone. Missing values are left out. Reads the dataset's summed-area tables, or
+     * goes through its columns once if it has none.
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @param zone the name of the zone, or "All Zones" for the whole region
+     * @return average pollution value or 0 if no data points are in the zone
+     */
+    public double calculateAvgPollution(DataSet dataSet, String zone) {
+        return query(dataSet).zone(zone).aggregate(StatisticsQuery.Aggregate.AVG).get(StatisticsQuery.Aggregate.AVG);
+    }
+    
+    /**
+     * Calculates the variance of the pollution values of the data points in a dataset that lie inside
+     * the region and the given zone. Missing values are left out.
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @param zone the name of the zone, or "All Zones" for the whole region
+     * @return variance of the pollution values or 0 if no data points are in the zone
+     */
+    public double calculateVariance(DataSet dataSet, String zone) {
+        return query(dataSet).zone(zone).aggregate(StatisticsQuery.Aggregate.VARIANCE)
+            .get(StatisticsQuery.Aggregate.VARIANCE);
+    }
+    
+    /**
+     * Returns the number, sum and sum of squares of the pollution values of the data points in a
+     * dataset that lie inside both the region and a rectangle, such as one selected on the map.
+     * Missing values are left out.
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @param minX the lowest easting of the rectangle
+     * @param maxX the highest easting of the rectangle
+     * @param minY the lowest northing of the rectangle
+     * @param maxY the highest northing of the rectangle
+     * @return the totals, from which the average and variance can be read
+     */
+    public SummedAreaTable.Totals summarizeRectangle(DataSet dataSet, int minX, int maxX, int minY, int maxY) {
+        int[] box = {Math.max(minX, easting_min), Math.min(maxX, easting_max),
+                     Math.max(minY, northing_min), Math.min(maxY, northing_max)};
+        return totals(dataSet, box);
+    }
+    
+    /**
+     * Returns the totals of the points of a dataset inside a bounding box from its summed-area
+     * tables, or by going through the points if it has none
+     */
+    private SummedAreaTable.Totals totals(DataSet dataSet, int[] box) {
+        return new StatisticsQuery(dataSet, this, box[0], box[1], box[2], box[3]).totals();
+    }
+    
+    /**
+     * Finds the data point with the highest pollution value in a dataset that lies inside the region
+     * and the given zone. Missing values are left out. Only the highest point is created as a
+     * DataPoint object.
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @param zone the name of the zone, or "All Zones" for the whole region
+     * @return the DataPoint with the highest pollution value, or null if no data points are in the zone
+     */
+    public DataPoint getHighestPollution(DataSet dataSet, String zone) {
+        int[] box = zoneBox(zone);
+        if (box == null) return null;
+        if (dataSet.isQuantized()) {
+            return getHighestPollution(dataSet.getQuantizedValues(), dataSet, box);
+        }
+        StatisticsKernels.Summary summary = summarize(dataSet, box);
+        if (summary.count() == 0) return null;
+        GridGeometry geometry = dataSet.getGeometry();
+        int highest;
+        if (dataSet.isOffHeap()) {
+            highest = StatisticsKernels.indexOf(geometry.getXColumn(), geometry.getYColumn(),
+                dataSet.getOffHeapValues().getValues(), dataSet.getValidity(), geometry.getBlockBounds(), dataSet.size(),
+                box[0], box[1], box[2], box[3], summary.max());
+        }
+        else {
+            highest = StatisticsKernels.indexOf(geometry.getXColumn(), geometry.getYColumn(),
+                dataSet.getValueColumn(), dataSet.getValidity(), geometry.getBlockBounds(), dataSet.size(),
+                box[0], box[1], box[2], box[3], summary.max());
+        }
+        return dataSet.getDataPoint(highest);
+    }
+    
+    /**
+     * Runs the summary kernel over the points of a dataset that lie inside a bounding box
+     */
+    private StatisticsKernels.Summary summarize(DataSet dataSet, int[] box) {
+        GridGeometry geometry = dataSet.getGeometry();
+        if (dataSet.isOffHeap()) {
+            return StatisticsKernels.summarize(geometry.getXColumn(), geometry.getYColumn(),
+                dataSet.getOffHeapValues().getValues(), dataSet.getValidity(), geometry.getBlockBounds(), dataSet.size(),
+                box[0], box[1], box[2], box[3]);
+        }
+        return StatisticsKernels.summarize(geometry.getXColumn(), geometry.getYColumn(),
+            dataSet.getValueColumn(), dataSet.getValidity(), geometry.getBlockBounds(), dataSet.size(),
+            box[0], box[1], box[2], box[3]);
+    }
+    
+    /**
+     * Finds the data point with the highest pollution value in a quantized dataset by comparing its
+     * fixed-point codes, which are in the same order as the values.
+     */
+    private DataPoint getHighestPollution(QuantizedValues codes, DataSet dataSet, int[] box) {
+        int highest = -1; // index of the highest point
+        int highestCode = -1;
+        for (int i = 0; i < dataSet.size(); i++) {
+            int code = codes.getCode(i);
+            if (code != QuantizedValues.MISSING_CODE && code > highestCode
+                    && isInBox(dataSet.getX(i), dataSet.getY(i), box)) {
+                highest = i;
+                highestCode = code;
+            }
+        }
+        return highest == -1 ? null : dataSet.getDataPoint(highest);
+    }
+    
+    /**
+     * Returns the count, average and highest value of a dataset in all nine zones and the whole
+     * region, filled in one pass over the dataset. The zone of each point is worked out once per
+     * region and geometry, and the totals are kept, so asking for another zone of the same dataset
+     * costs nothing.
+     * 
+     * @param dataSet the dataset containing pollution data
+     * @return the totals of each zone, looked up by zoneId
+     */
+    public synchronized ZoneTotals aggregateZones(DataSet dataSet) {
+        ZoneTotals totals = zoneTotals.get(dataSet);
+        if (totals == null) {
+            ZoneAssignment assignment = dataSet.getGeometry().getZoneAssignment(this);
+            totals = ZoneTotals.aggregate(dataSet, assignment);
+            zoneTotals.put(dataSet, totals);
+        }
+        return totals;
+    }
+    
+    /**
+     * Returns the id of a zone
+     * @param zone  name of the zone, or "All Zones" for the whole region
+     * @return the position of the zone in ZONES, ALL_ZONES, or OUTSIDE if there is no such zone
+     */
+    public static int zoneId(String zone) {
+        if (zone.equals("All Zones")) return ALL_ZONES;
+        return ZONES.indexOf(zone);
+    }
+    
+    /**
+     * Returns the region boundaries as a string, the same for every Statistics of the same region
+     */
+    String getRegionKey() {
+        return easting_min + "," + easting_max + "," + northing_min + "," + northing_max;
+    }
+    
     /**
      * Filters data points to include points inside the region only
      * 
@@ -91,8 +269,12 @@ public class Statistics
             return dataPoints; //Returns all points in the map
         }
         
+        int id = zoneId(zone);
+        if (id == OUTSIDE && !zone.equals("Outside map range")) {
+            return List.of(); //No such zone
+        }
         return dataPoints.stream().filter(point -> 
-        determineZone(point.x(), point.y()).equals(zone)).collect(Collectors.toList());    
+        determineZoneId(point.x(), point.y()) == id).collect(Collectors.toList());    
     }
     
     /**
@@ -106,6 +288,52 @@ public class Statistics
                (northing >= northing_min && northing <= northing_max);
     }
     
+    /**
+     * Returns the bounding box of a zone, as the lowest and highest easting and northing inside it:
+     * {easting min, easting max, northing min, northing max}. A point is inside the box exactly
+     * when determineZone gives the zone for it.
+     * @param zone  name of the zone, or "All Zones" for the whole region
+     * @return the box, or null if there is no such zone
+     */
+    int[] zoneBox(String zone) {
+        int l1_x = easting_min + (easting_max - easting_min) / 3;
+        int l2_x = easting_min + 2 * (easting_max - easting_min) / 3;
+        int l1_y = northing_min + (northing_max - northing_min) / 3;
+        int l2_y = northing_min + 2 * (northing_max - northing_min) / 3;
+        
+        // the west, middle and east columns and the south, middle and north rows, each as a lowest and highest value
+        int[] columns = {easting_min, l1_x, l1_x + 1, l2_x, l2_x + 1, easting_max};
+        int[] rows = {northing_min, l1_y, l1_y + 1, l2_y - 1, l2_y, northing_max};
+        
+        switch (zone) {
+            case "All Zones": return new int[]{easting_min, easting_max, northing_min, northing_max};
+            case "Northwest": return box(columns, 0, rows, 2);
+            case "North": return box(columns, 1, rows, 2);
+            case "Northeast": return box(columns, 2, rows, 2);
+            case "West": return box(columns, 0, rows, 1);
+            case "Central": return box(columns, 1, rows, 1);
+            case "East": return box(columns, 2, rows, 1);
+            case "Southwest": return box(columns, 0, rows, 0);
+            case "South": return box(columns, 1, rows, 0);
+            case "Southeast": return box(columns, 2, rows, 0);
+            default: return null;
+        }
+    }
+    
+    /**
+     * Returns the bounding box of one column and row of zones
+     */
+    private static int[] box(int[] columns, int column, int[] rows, int row) {
+        return new int[]{columns[2 * column], columns[2 * column + 1], rows[2 * row], rows[2 * row + 1]};
+    }
+    
+    /**
+     * Checks if given (x,y) coordinate is within a bounding box from zoneBox
+     */
+    private static boolean isInBox(int easting, int northing, int[] box) {
+        return easting >= box[0] && easting <= box[1] && northing >= box[2] && northing <= box[3];
+    }
+    
     /**
      * Determines the zone bassed on the given coordinates (easting, northing).
      * The region is divided into: Northwest, North, Northeast, South, Southwest, Southeast
@@ -115,9 +343,20 @@ public class Statistics
      * @return name of zone
      */
     public String determineZone(int x, int y) {
+        int id = determineZoneId(x, y);
+        return id == OUTSIDE ? "Outside map range" : ZONES.get(id);
+    }
+    
+    /**
+     * Determines the id of the zone of the given coordinates, the position of its name in ZONES.
+     * @param x  x-coordinate/easting
+     * @param y the y-coordinate /northing
+     * @return id of the zone, or OUTSIDE
+     */
+    public int determineZoneId(int x, int y) {
         // Check if point is outside the region bounds
         if (x < easting_min || x > easting_max || y < northing_min || y > northing_max) {
-            return "Outside map range";
+            return OUTSIDE;
         }
     
         int l1_x = easting_min + (easting_max - easting_min) / 3;
@@ -126,17 +365,17 @@ public class Statistics
         int l2_y = northing_min + 2 * (northing_max - northing_min) / 3;
     
         // Determine the region
-        if (x <= l1_x && y >= l2_y) return "Northwest";
-        if (x > l1_x && x <= l2_x && y >= l2_y) return "North";
-        if (x > l2_x && y >= l2_y) return "Northeast";
-        if (x <= l1_x && y > l1_y && y <= l2_y) return "West";
-        if (x > l1_x && x <= l2_x && y > l1_y && y <= l2_y) return "Central";
-        if (x > l2_x && y > l1_y && y <= l2_y) return "East";
-        if (x <= l1_x && y <= l1_y) return "Southwest";
-        if (x > l1_x && x <= l2_x && y <= l1_y) return "South";
-        if (x > l2_x && y <= l1_y) return "Southeast";
-    
-        return "Outside map range"; // if the point is not in any of the other regions
+        if (x <= l1_x && y >= l2_y) return 0; // Northwest
+        if (x > l1_x && x <= l2_x && y >= l2_y) return 1; // North
+        if (x > l2_x && y >= l2_y) return 2; // Northeast
+        if (x <= l1_x && y > l1_y && y <= l2_y) return 3; // West
+        if (x > l1_x && x <= l2_x && y > l1_y && y <= l2_y) return 4; // Central
+        if (x > l2_x && y > l1_y && y <= l2_y) return 5; // East
+        if (x <= l1_x && y <= l1_y) return 6; // Southwest
+        if (x > l1_x && x <= l2_x && y <= l1_y) return 7; // South
+        if (x > l2_x && y <= l1_y) return 8; // Southeast
+    
+        return OUTSIDE; // if the point is not in any of the other regions
     }
 
     
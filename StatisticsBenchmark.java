@@ -0,0 +1,110 @@
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * Measures how quickly the average and highest value of a region are found by the
+ * original loops over DataPoint objects, the plain scalar kernel over the columns and
+ * the branch-free kernel with a validity bitmap, over values on the heap and off it.
+ * Each is run a few times first so the JIT has compiled it before the timed rounds.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class StatisticsBenchmark
+{
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int TIMED_ROUNDS = 500;
+    private static final String FILE = "UKAirPollutionData/NO2/mapno22023.csv";
+
+    // the London region, a box over the south west and a box taking in the whole grid
+    private static final int[][] BOXES = {
+        {510394, 553297, 168504, 193305},
+        {0, 200000, 0, 600000},
+        {0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE}
+    };
+
+    /**
+     * Runs the benchmark and prints the time per scan for each way of scanning
+     */
+    public static void main(String[] args)
+    {
+        DataSet dataSet = new DataLoader(true).loadDataFile(FILE);
+        if (dataSet == null){
+            return;
+        }
+        List<DataPoint> points = dataSet.getData().stream().toList();
+        GridGeometry geometry = dataSet.getGeometry();
+        int[] xs = geometry.getXColumn();
+        int[] ys = geometry.getYColumn();
+        double[] values = dataSet.getValueColumn();
+        long[] validity = dataSet.getValidity();
+        int[] blockBounds = geometry.getBlockBounds();
+        int size = dataSet.size();
+        OffHeapColumn offHeap = new OffHeapArena().allocate(size);
+        offHeap.copyFrom(values, size);
+        DoubleBuffer offHeapValues = offHeap.getValues();
+
+        for (int[] box : BOXES){
+            System.out.println("Box " + box[0] + ".." + box[1] + " x " + box[2] + ".." + box[3]);
+            double objects = run("DataPoint list", () -> scanPoints(points, box));
+            double scalar = run("scalar kernel", () ->
+                StatisticsKernels.summarizeScalar(xs, ys, values, size, box[0], box[1], box[2], box[3]).max());
+            double branchFree = run("bitmap kernel", () ->
+                StatisticsKernels.summarize(xs, ys, values, validity, blockBounds, size, box[0], box[1], box[2], box[3]).max());
+            run("off-heap kernel", () ->
+                StatisticsKernels.summarize(xs, ys, offHeapValues, validity, blockBounds, size, box[0], box[1], box[2], box[3]).max());
+            System.out.printf("bitmap kernel is %.1fx the DataPoint list and %.1fx the scalar kernel%n",
+                              objects / branchFree, scalar / branchFree);
+        }
+    }
+
+    /**
+     * Times a scan and prints the microseconds it takes
+     * @param String name name of the scan to print
+     * @param Scan scan the scan to measure
+     * @return double microseconds per scan
+     */
+    private static double run(String name, Scan scan)
+    {
+        double check = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++){
+            check += scan.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++){
+            check += scan.run();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / TIMED_ROUNDS;
+        // printing the check value stops the JIT from dropping the scans
+        System.out.printf("%-15s %8.1f us per scan (check %.1f)%n", name, micros, check);
+        return micros;
+    }
+
+    /**
+     * The same scan as the original Statistics loops: sum and highest of the DataPoint
+     * objects inside a box, leaving out missing values
+     */
+    private static double scanPoints(List<DataPoint> points, int[] box)
+    {
+        double total = 0;
+        DataPoint highest = null;
+        for (DataPoint point : points){
+            if (point.x() >= box[0] && point.x() <= box[1] && point.y() >= box[2] && point.y() <= box[3]
+                    && point.value() >= 0){
+                total += point.value();
+                if (highest == null || point.value() > highest.value()){
+                    highest = point;
+                }
+            }
+        }
+        return highest == null ? total : highest.value();
+    }
+
+    /**
+     * A scan over the data that returns a value depending on all of it
+     */
+    private interface Scan
+    {
+        double run();
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * A statistics request on one dataset, built up from conditions and run once for any number
+ * of aggregates, for example
+ *
+ *     stats.query(dataSet).within(region).zone("North").aggregate(Aggregate.AVG, Aggregate.MAX, Aggregate.COUNT)
+ *
+ * Every condition narrows one easting/northing box, since regions, zones and rectangles are
+ * all boxes, so the conditions cost nothing by the time the query runs and no list of points
+ * is ever made. A region sets the box afresh rather than narrowing it, so a query can be
+ * moved to any region. The count, sum, average and variance are read from the dataset's summed-area
+ * tables. The lowest and highest values take one loop over the dataset's columns, which works
+ * out every aggregate asked for at the same time. The loop over a quantized dataset adds up
+ * its 16-bit codes and decodes the totals once, instead of decoding every value. Missing
+ * values are left out.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class StatisticsQuery
+{
+    /**
+     * The aggregates a query can work out
+     */
+    public enum Aggregate
+    {
+        COUNT, SUM, AVG, MIN, MAX, VARIANCE
+    }
+
+    private static final int AGGREGATES = Aggregate.values().length;
+
+    /**
+     * The aggregates worked out by a query
+     */
+    public static class Result
+    {
+        private final double[] values;
+        private final boolean[] requested;
+
+        /**
+         * Constructor for objects of class Result
+         */
+        private Result(double[] values, boolean[] requested)
+        {
+            this.values = values;
+            this.requested = requested;
+        }
+
+        /**
+         * Returns an aggregate. With no values in the box the count, sum, average and variance
+         * are 0 and the lowest and highest values are NaN.
+         * @param Aggregate aggregate the aggregate, which must have been asked for
+         * @return double the value
+         */
+        public double get(Aggregate aggregate)
+        {
+            if (!requested[aggregate.ordinal()]){
+                throw new IllegalArgumentException(aggregate + " was not asked for");
+            }
+            return values[aggregate.ordinal()];
+        }
+
+        /**
+         * Returns the number of values the aggregates were worked out from
+         */
+        public int count()
+        {
+            return (int) values[Aggregate.COUNT.ordinal()];
+        }
+    }
+
+    private final DataSet dataSet;
+    // the statistics whose zones zone refers to
+    private Statistics zones;
+    private int minX;
+    private int maxX;
+    private int minY;
+    private int maxY;
+
+    /**
+     * Constructor for a query over the whole region of a Statistics object
+     */
+    StatisticsQuery(DataSet dataSet, Statistics stats, int minX, int maxX, int minY, int maxY)
+    {
+        this.dataSet = dataSet;
+        this.zones = stats;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Moves the query to a region, which may lie outside the region it was made for: the box
+     * becomes the region, replacing any earlier condition. Zones chosen afterwards are zones of
+     * this region.
+     * @param Region region the region
+     * @return StatisticsQuery this query
+     */
+    public StatisticsQuery within(Region region)
+    {
+        zones = new Statistics(region);
+        minX = (int) region.getRegionLeft();
+        maxX = (int) region.getRegionRight();
+        minY = (int) region.getRegionBottom();
+        maxY = (int) region.getRegionTop();
+        return this;
+    }
+
+    /**
+     * Keeps only the points inside a rectangle, edges included
+     * @param int minX the lowest easting
+     * @param int maxX the highest easting
+     * @param int minY the lowest northing
+     * @param int maxY the highest northing
+     * @return StatisticsQuery this query
+     */
+    public StatisticsQuery within(int minX, int maxX, int minY, int maxY)
+    {
+        this.minX = Math.max(this.minX, minX);
+        this.maxX = Math.min(this.maxX, maxX);
+        this.minY = Math.max(this.minY, minY);
+        this.maxY = Math.min(this.maxY, maxY);
+        return this;
+    }
+
+    /**
+     * Keeps only the points inside a zone of the region
+     * @param String zone the name of the zone, or "All Zones" for the whole region
+     * @return StatisticsQuery this query, which matches no points if there is no such zone
+     */
+    public StatisticsQuery zone(String zone)
+    {
+        int[] box = zones.zoneBox(zone);
+        if (box == null){
+            // an empty box
+            return within(1, 0, 1, 0);
+        }
+        return within(box[0], box[1], box[2], box[3]);
+    }
+
+    /**
+     * Runs the query
+     * @param Aggregate... aggregates the aggregates to work out
+     * @return Result the aggregates
+     */
+    public Result aggregate(Aggregate... aggregates)
+    {
+        boolean[] requested = new boolean[AGGREGATES];
+        for (Aggregate aggregate : aggregates){
+            requested[aggregate.ordinal()] = true;
+        }
+        boolean extremes = requested[Aggregate.MIN.ordinal()] || requested[Aggregate.MAX.ordinal()];
+
+        int count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        SummedAreaTable table = minX > maxX || minY > maxY ? null : dataSet.getSummedAreaTable();
+        Scan scan = null;
+        if (table != null){
+            SummedAreaTable.Totals totals = table.query(minX, maxX, minY, maxY);
+            count = totals.count();
+            sum = totals.sum();
+            sumOfSquares = totals.sumOfSquares();
+            if (extremes && !dataSet.isQuantized()){
+                // the kernel skips whole blocks of points outside the box
+                StatisticsKernels.Summary summary = summarize();
+                if (summary.count() > 0){
+                    min = summary.min();
+                    max = summary.max();
+                }
+            }
+            else if (extremes){
+                scan = scan();
+            }
+        }
+        else if (minX <= maxX && minY <= maxY){
+            // one loop for everything the tables could not answer
+            scan = scan();
+            count = scan.count();
+            sum = scan.sum();
+            sumOfSquares = scan.sumOfSquares();
+        }
+        if (scan != null && scan.count() > 0){
+            min = scan.min();
+            max = scan.max();
+        }
+
+        double[] values = new double[AGGREGATES];
+        double mean = count == 0 ? 0 : sum / count;
+        values[Aggregate.COUNT.ordinal()] = count;
+        values[Aggregate.SUM.ordinal()] = sum;
+        values[Aggregate.AVG.ordinal()] = mean;
+        values[Aggregate.MIN.ordinal()] = min;
+        values[Aggregate.MAX.ordinal()] = max;
+        values[Aggregate.VARIANCE.ordinal()] = count == 0 ? 0 : Math.max(0, sumOfSquares / count - mean * mean);
+        return new Result(values, requested);
+    }
+
+    /**
+     * Returns the count, sum and sum of squares of the values inside the box, from the
+     * summed-area tables or by going through the columns if the dataset has none
+     */
+    SummedAreaTable.Totals totals()
+    {
+        if (minX > maxX || minY > maxY){
+            return new SummedAreaTable.Totals(0, 0, 0);
+        }
+        SummedAreaTable table = dataSet.getSummedAreaTable();
+        if (table != null){
+            return table.query(minX, maxX, minY, maxY);
+        }
+        Scan scan = scan();
+        return new SummedAreaTable.Totals(scan.count(), scan.sum(), scan.sumOfSquares());
+    }
+
+    /**
+     * The values inside the box, found by going through the dataset's columns
+     */
+    private record Scan(int count, double sum, double sumOfSquares, double min, double max)
+    {
+    }
+
+    /**
+     * Goes through the columns once for every aggregate. A quantized dataset is totalled on its
+     * codes, which are only decoded once at the end.
+     */
+    private Scan scan()
+    {
+        GridGeometry geometry = dataSet.getGeometry();
+        int[] xs = geometry.getXColumn();
+        int[] ys = geometry.getYColumn();
+        QuantizedValues codes = dataSet.getQuantizedValues();
+        if (codes != null){
+            int count = 0;
+            long codeSum = 0;
+            long codeSquares = 0;
+            int lowest = QuantizedValues.MISSING_CODE;
+            int highest = -1;
+            for (int i = 0; i < dataSet.size(); i++){
+                int x = xs[i];
+                int y = ys[i];
+                if (x < minX || x > maxX || y < minY || y > maxY){
+                    continue;
+                }
+                int code = codes.getCode(i);
+                if (code == QuantizedValues.MISSING_CODE){
+                    continue;
+                }
+                count++;
+                codeSum += code;
+                codeSquares += (long) code * code;
+                lowest = Math.min(lowest, code);
+                highest = Math.max(highest, code);
+            }
+            return new Scan(count, codes.decodeSum(codeSum, count), codes.decodeSumOfSquares(codeSum, codeSquares, count),
+                            codes.decodeCode(lowest), codes.decodeCode(highest));
+        }
+        double[] column = dataSet.getValueColumn();
+        int count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        double lowest = Double.POSITIVE_INFINITY;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < dataSet.size(); i++){
+            int x = xs[i];
+            int y = ys[i];
+            if (x < minX || x > maxX || y < minY || y > maxY){
+                continue;
+            }
+            double value = column != null ? column[i] : dataSet.getValue(i);
+            if (value < 0){
+                continue;
+            }
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+            lowest = Math.min(lowest, value);
+            highest = Math.max(highest, value);
+        }
+        return new Scan(count, sum, sumOfSquares, lowest, highest);
+    }
+
+    /**
+     * Runs the summary kernel over the dataset's values on or off the heap
+     */
+    private StatisticsKernels.Summary summarize()
+    {
+        GridGeometry geometry = dataSet.getGeometry();
+        if (dataSet.isOffHeap()){
+            return StatisticsKernels.summarize(geometry.getXColumn(), geometry.getYColumn(),
+                dataSet.getOffHeapValues().getValues(), dataSet.getValidity(), geometry.getBlockBounds(),
+                dataSet.size(), minX, maxX, minY, maxY);
+        }
+        return StatisticsKernels.summarize(geometry.getXColumn(), geometry.getYColumn(),
+            dataSet.getValueColumn(), dataSet.getValidity(), geometry.getBlockBounds(),
+            dataSet.size(), minX, maxX, minY, maxY);
+    }
+}
@@ -18,6 +18,7 @@ public class StatisticsTest
     private Statistics stats;
     private Region testRegion;
     private WritableImage testImage;
+    private DataSet dataSet;
     /**
      * Default constructor for test class StatisticsTest
      */
@@ -40,6 +41,12 @@ public class StatisticsTest
         testRegion = new Region("TestRegion",testImage, 250, 0, 0, 250);
         //initialises stats object with test region
         stats = new Statistics(testRegion);
+        //initialises a dataset of four points, three of them in the test region
+        dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        dataSet.addData(1, 10, 10, 20.0);     //inside, Southwest
+        dataSet.addData(2, 240, 240, 40.0);   //inside, Northeast
+        dataSet.addData(3, 300, 100, 90.0);   //outside of boundary
+        dataSet.addData(4, 20, 30, 30.0);     //inside, Southwest
     }
 
     /**
@@ -165,4 +172,158 @@ public class StatisticsTest
         assertEquals("Outside map range", stats.determineZone(251, 251));
         assertEquals("East", stats.determineZone(250, 125));
     }
+    
+    /**
+     * Test method for calculating the average and highest pollution straight from the
+     * columns of a dataset, for the whole region and for a single zone.
+     */
+    @Test
+    public void testStatisticsFromDataSet() {
+        assertEquals(30.0, stats.calculateAvgPollution(dataSet, "All Zones"), 0.001);
+        assertEquals(25.0, stats.calculateAvgPollution(dataSet, "Southwest"), 0.001);
+        assertEquals(0.0, stats.calculateAvgPollution(dataSet, "Central"), 0.001);
+        
+        assertEquals(2, stats.getHighestPollution(dataSet, "All Zones").gridCode());
+        assertEquals(4, stats.getHighestPollution(dataSet, "Southwest").gridCode());
+        assertNull(stats.getHighestPollution(dataSet, "Central"));
+    }
+    
+    @Test
+    public void testStatisticsFromQuantizedDataSet() {
+        dataSet.addData(5, 30, 30, -1.0);     //inside, Southwest, missing
+        dataSet.quantize();
+        
+        double maxError = dataSet.getQuantizedValues().getMaxError();
+        assertEquals(30.0, dataSet.getValue(3), maxError);
+        assertEquals(-1.0, dataSet.getValue(4), 0.0);
+        assertEquals(30.0, stats.calculateAvgPollution(dataSet, "All Zones"), maxError);
+        assertEquals(25.0, stats.calculateAvgPollution(dataSet, "Southwest"), maxError);
+        
+        assertEquals(2, stats.getHighestPollution(dataSet, "All Zones").gridCode());
+        assertEquals(4, stats.getHighestPollution(dataSet, "Southwest").gridCode());
+        assertNull(stats.getHighestPollution(dataSet, "Central"));
+    }
+    
+    @Test
+    public void testMissingValuesAreSkipped() {
+        DataSet missingData = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        missingData.addData(1, 10, 10, 20.0);     //inside, Southwest
+        missingData.addData(2, 20, 20, -1.0);     //inside, Southwest, missing
+        missingData.addData(3, 120, 120, -1.0);   //inside, Central, missing
+        
+        assertEquals(20.0, stats.calculateAvgPollution(missingData, "Southwest"), 0.001);
+        assertEquals(20.0, stats.calculateAvgPollution(missingData.getData()), 0.001);
+        assertEquals(0.0, stats.calculateAvgPollution(missingData, "Central"), 0.001);
+        assertEquals(1, stats.getHighestPollution(missingData, "All Zones").gridCode());
+        assertNull(stats.getHighestPollution(missingData, "Central"));
+        assertNull(stats.getHighestPollution(List.of(new DataPoint(3, 120, 120, -1.0))));
+    }
+    
+    /**
+     * Test method for the variance of a zone and the totals of a rectangle, on points that sit
+     * on the 1 km grid and are read from the summed-area tables.
+     */
+    @Test
+    public void testRectangleStatistics() {
+        Statistics gridStats = new Statistics(new Region("GridRegion", testImage, 6000, 0, 0, 6000));
+        DataSet gridData = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        gridData.addData(1, 500, 500, 10.0);     //Southwest
+        gridData.addData(2, 1500, 500, 30.0);    //Southwest
+        gridData.addData(3, 1500, 1500, -1.0);   //Southwest, missing
+        gridData.addData(4, 5500, 5500, 50.0);   //Northeast
+        gridData.addData(5, 3250, 3250, 20.0);   //Central, not on the grid
+        
+        assertEquals(20.0, gridStats.calculateAvgPollution(gridData, "Southwest"), 0.001);
+        assertEquals(100.0, gridStats.calculateVariance(gridData, "Southwest"), 0.001);
+        assertEquals(0.0, gridStats.calculateVariance(gridData, "North"), 0.001);
+        assertEquals(27.5, gridStats.calculateAvgPollution(gridData, "All Zones"), 0.001);
+        
+        SummedAreaTable.Totals totals = gridStats.summarizeRectangle(gridData, 1000, 9000, 0, 4000);
+        assertEquals(2, totals.count());
+        assertEquals(50.0, totals.sum(), 0.001);
+        assertEquals(25.0, totals.average(), 0.001);
+    }
+    
+    /**
+     * Test method for a query working out several aggregates of a zone at once.
+     */
+    @Test
+    public void testQueryAggregates() {
+        dataSet.addData(5, 30, 30, -1.0);     //inside, Southwest, missing
+        
+        StatisticsQuery.Result result = stats.query(dataSet).zone("Southwest").aggregate(
+            StatisticsQuery.Aggregate.AVG, StatisticsQuery.Aggregate.MAX, StatisticsQuery.Aggregate.COUNT);
+        assertEquals(25.0, result.get(StatisticsQuery.Aggregate.AVG), 0.001);
+        assertEquals(30.0, result.get(StatisticsQuery.Aggregate.MAX), 0.001);
+        assertEquals(2, result.count());
+        assertThrows(IllegalArgumentException.class, () -> result.get(StatisticsQuery.Aggregate.MIN));
+        
+        StatisticsQuery.Result rectangle = stats.query(dataSet).within(0, 100, 0, 20)
+            .aggregate(StatisticsQuery.Aggregate.SUM, StatisticsQuery.Aggregate.MIN);
+        assertEquals(20.0, rectangle.get(StatisticsQuery.Aggregate.SUM), 0.001);
+        assertEquals(20.0, rectangle.get(StatisticsQuery.Aggregate.MIN), 0.001);
+        
+        StatisticsQuery.Result empty = stats.query(dataSet).zone("Central").aggregate(StatisticsQuery.Aggregate.MAX);
+        assertEquals(0, empty.count());
+        assertTrue(Double.isNaN(empty.get(StatisticsQuery.Aggregate.MAX)));
+    }
+    
+    /**
+     * Test method for a query moved to a region other than the one of its Statistics object,
+     * whose zones are then zones of that region.
+     */
+    @Test
+    public void testQueryWithinOtherRegion() {
+        dataSet.addData(5, 500, 250, 50.0);   //outside of boundary
+        Region otherRegion = new Region("OtherRegion", testImage, 600, 300, 0, 300);
+        
+        StatisticsQuery.Result whole = stats.query(dataSet).within(otherRegion).aggregate(
+            StatisticsQuery.Aggregate.COUNT, StatisticsQuery.Aggregate.SUM);
+        assertEquals(2, whole.count());
+        assertEquals(140.0, whole.get(StatisticsQuery.Aggregate.SUM), 0.001);
+        
+        StatisticsQuery.Result southwest = stats.query(dataSet).within(otherRegion).zone("Southwest")
+            .aggregate(StatisticsQuery.Aggregate.COUNT, StatisticsQuery.Aggregate.MAX);
+        assertEquals(1, southwest.count());
+        assertEquals(90.0, southwest.get(StatisticsQuery.Aggregate.MAX), 0.001);
+        assertEquals(50.0, stats.query(dataSet).within(otherRegion).zone("North")
+            .aggregate(StatisticsQuery.Aggregate.AVG).get(StatisticsQuery.Aggregate.AVG), 0.001);
+        
+        // the region replaces an earlier rectangle, a later rectangle narrows the region
+        assertEquals(2, stats.query(dataSet).within(0, 100, 0, 20).within(otherRegion)
+            .aggregate(StatisticsQuery.Aggregate.COUNT).count());
+        assertEquals(1, stats.query(dataSet).within(otherRegion).within(0, 400, 0, 300)
+            .aggregate(StatisticsQuery.Aggregate.COUNT).count());
+        assertEquals(3, stats.query(dataSet).within(otherRegion).within(testRegion)
+            .aggregate(StatisticsQuery.Aggregate.COUNT).count());
+    }
+    
+    /**
+     * Test method for a query on a quantized dataset, which totals the codes instead of the
+     * values, and for values which are missing because they are negative or NaN.
+     */
+    @Test
+    public void testQuantizedQueryAggregates() {
+        dataSet.addData(5, 30, 30, -1.0);             //inside, Southwest, missing
+        dataSet.addData(6, 40, 40, -7.5);             //inside, Southwest, missing
+        dataSet.addData(7, 50, 50, Double.NaN);       //inside, Southwest, missing
+        dataSet.quantize();
+        
+        QuantizedValues codes = dataSet.getQuantizedValues();
+        double maxError = codes.getMaxError();
+        assertEquals(QuantizedValues.MISSING_CODE, codes.getCode(5));
+        assertEquals(QuantizedValues.MISSING_CODE, codes.getCode(6));
+        assertEquals(20.0, codes.getOffset(), 0.0);
+        
+        StatisticsQuery.Result result = stats.query(dataSet).zone("Southwest").aggregate(
+            StatisticsQuery.Aggregate.COUNT, StatisticsQuery.Aggregate.AVG, StatisticsQuery.Aggregate.MIN,
+            StatisticsQuery.Aggregate.MAX, StatisticsQuery.Aggregate.VARIANCE);
+        assertEquals(2, result.count());
+        assertEquals(25.0, result.get(StatisticsQuery.Aggregate.AVG), maxError);
+        assertEquals(20.0, result.get(StatisticsQuery.Aggregate.MIN), maxError);
+        assertEquals(30.0, result.get(StatisticsQuery.Aggregate.MAX), maxError);
+        assertEquals(25.0, result.get(StatisticsQuery.Aggregate.VARIANCE), 0.01);
+        assertEquals(25.0, stats.calculateVariance(dataSet, "Southwest"), 0.01);
+        assertEquals(4, stats.getHighestPollution(dataSet, "Southwest").gridCode());
+    }
 }
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+
+/**
+ * Summed-area tables of one dataset over blocks of the dense 1 km grid of its geometry,
+ * which give the count, sum and sum of squares of the values inside any easting/northing
+ * rectangle from four reads of each table plus the cells along its edges.
+ *
+ * Entry (row, column) of a table holds the total of every block south west of that block,
+ * itself included. The total over a run of whole blocks is then the entry at its north east
+ * corner, less the entries just west and just south of it, plus the entry south west of
+ * it, which was taken off twice. The cells of the rectangle outside its whole blocks, fewer
+ * than BLOCK deep along each edge, are read one by one through the grid index. Missing values
+ * are not counted. The few points which do not sit on the grid, or share a cell with an
+ * earlier point, are kept aside and added one by one, as GridIndex does.
+ *
+ * A table with an entry per cell would take 20 bytes per cell of the bounding box, several
+ * times the values themselves, and a cache bounded by bytes would hold far fewer datasets.
+ * With one entry per block of BLOCK by BLOCK cells the tables take well under a byte per cell.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class SummedAreaTable
+{
+    // cells along each side of a block
+    static final int BLOCK = 8;
+
+    /**
+     * The values inside a rectangle
+     */
+    public record Totals(int count, double sum, double sumOfSquares)
+    {
+        /**
+         * Returns the average of the values, or 0 if there were none
+         */
+        public double average()
+        {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * Returns the population variance of the values, or 0 if there were none
+         */
+        public double variance()
+        {
+            if (count == 0){
+                return 0;
+            }
+            double mean = sum / count;
+            // the difference of two large totals can come out slightly below 0
+            return Math.max(0, sumOfSquares / count - mean * mean);
+        }
+    }
+
+    private final DataSet dataSet;
+    private final GridIndex index;
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    // (blocks across + 1) * (blocks up + 1) entries, with a row and column of zeros to the south and west
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] squares;
+    // data points which are not read through the grid index, with their coordinates and values
+    private final int[] offGridXs;
+    private final int[] offGridYs;
+    private final double[] offGridValues;
+
+    /**
+     * Constructor for objects of class SummedAreaTable
+     */
+    private SummedAreaTable(DataSet dataSet, GridIndex index, int[] counts, double[] sums, double[] squares,
+                            int[] offGridXs, int[] offGridYs, double[] offGridValues)
+    {
+        this.dataSet = dataSet;
+        this.index = index;
+        this.minX = index.getMinX();
+        this.minY = index.getMinY();
+        this.width = index.getWidth();
+        this.height = index.getHeight();
+        this.counts = counts;
+        this.sums = sums;
+        this.squares = squares;
+        this.offGridXs = offGridXs;
+        this.offGridYs = offGridYs;
+        this.offGridValues = offGridValues;
+    }
+
+    /**
+     * Builds the tables of a dataset's values
+     * @param DataSet dataSet the dataset
+     * @return SummedAreaTable the tables, or null if the dataset is too spread out to have any
+     */
+    public static SummedAreaTable build(DataSet dataSet)
+    {
+        GridIndex index = dataSet.getGridIndex();
+        int width = index.getWidth();
+        if (width == 0 && dataSet.size() > 0){
+            // the grid index was too big to build
+            return null;
+        }
+        int stride = blocks(width) + 1;
+        int entries = stride * (blocks(index.getHeight()) + 1);
+        int[] counts = new int[entries];
+        double[] sums = new double[entries];
+        double[] squares = new double[entries];
+
+        int[] offGridXs = new int[16];
+        int[] offGridYs = new int[16];
+        double[] offGridValues = new double[16];
+        int offGridCount = 0;
+        // first the totals of each block, stored one row and column in
+        for (int i = 0; i < dataSet.size(); i++){
+            double value = dataSet.getValue(i);
+            if (!(value >= 0)){
+                continue;
+            }
+            int x = dataSet.getX(i);
+            int y = dataSet.getY(i);
+            int cell = index.cellOf(x, y);
+            if (cell == GridIndex.MISSING || index.indexOfCell(cell) != i){
+                // the index cannot find this point when the cells along an edge are read
+                if (offGridCount == offGridXs.length){
+                    offGridXs = Arrays.copyOf(offGridXs, offGridCount * 2);
+                    offGridYs = Arrays.copyOf(offGridYs, offGridCount * 2);
+                    offGridValues = Arrays.copyOf(offGridValues, offGridCount * 2);
+                }
+                offGridXs[offGridCount] = x;
+                offGridYs[offGridCount] = y;
+                offGridValues[offGridCount++] = value;
+                continue;
+            }
+            int entry = (cell / width / BLOCK + 1) * stride + cell % width / BLOCK + 1;
+            counts[entry]++;
+            sums[entry] += value;
+            squares[entry] += value * value;
+        }
+        // then add up each row from the west and each column from the south
+        for (int entry = stride + 1; entry < entries; entry++){
+            if (entry % stride != 0){
+                counts[entry] += counts[entry - 1] + counts[entry - stride] - counts[entry - stride - 1];
+                sums[entry] += sums[entry - 1] + sums[entry - stride] - sums[entry - stride - 1];
+                squares[entry] += squares[entry - 1] + squares[entry - stride] - squares[entry - stride - 1];
+            }
+        }
+        return new SummedAreaTable(dataSet, index, counts, sums, squares, Arrays.copyOf(offGridXs, offGridCount),
+                                   Arrays.copyOf(offGridYs, offGridCount), Arrays.copyOf(offGridValues, offGridCount));
+    }
+
+    /**
+     * Returns the count, sum and sum of squares of the values inside a rectangle, edges included
+     * @param int minX the lowest easting
+     * @param int maxX the highest easting
+     * @param int minY the lowest northing
+     * @param int maxY the highest northing
+     * @return Totals the totals
+     */
+    public Totals query(int minX, int maxX, int minY, int maxY)
+    {
+        // count, sum and sum of squares
+        double[] totals = new double[3];
+        // the columns and rows of the cells whose centres are inside the rectangle
+        int firstColumn = (int) Math.max(0, ceilDiv((long) minX - this.minX, GridIndex.CELL_SIZE));
+        int lastColumn = (int) Math.min(width - 1, Math.floorDiv((long) maxX - this.minX, GridIndex.CELL_SIZE));
+        int firstRow = (int) Math.max(0, ceilDiv((long) minY - this.minY, GridIndex.CELL_SIZE));
+        int lastRow = (int) Math.min(height - 1, Math.floorDiv((long) maxY - this.minY, GridIndex.CELL_SIZE));
+        if (firstColumn <= lastColumn && firstRow <= lastRow){
+            // the whole blocks inside the rectangle
+            int firstBlockColumn = blocks(firstColumn);
+            int lastBlockColumn = (lastColumn + 1) / BLOCK - 1;
+            int firstBlockRow = blocks(firstRow);
+            int lastBlockRow = (lastRow + 1) / BLOCK - 1;
+            if (firstBlockColumn <= lastBlockColumn && firstBlockRow <= lastBlockRow){
+                addBlocks(totals, firstBlockColumn, lastBlockColumn, firstBlockRow, lastBlockRow);
+                // the cells around the blocks: whole rows south and north, part rows west and east
+                int blocksWest = firstBlockColumn * BLOCK;
+                int blocksEast = (lastBlockColumn + 1) * BLOCK - 1;
+                int blocksSouth = firstBlockRow * BLOCK;
+                int blocksNorth = (lastBlockRow + 1) * BLOCK - 1;
+                for (int row = firstRow; row <= lastRow; row++){
+                    if (row < blocksSouth || row > blocksNorth){
+                        addCells(totals, row, firstColumn, lastColumn);
+                    }
+                    else{
+                        addCells(totals, row, firstColumn, blocksWest - 1);
+                        addCells(totals, row, blocksEast + 1, lastColumn);
+                    }
+                }
+            }
+            else{
+                for (int row = firstRow; row <= lastRow; row++){
+                    addCells(totals, row, firstColumn, lastColumn);
+                }
+            }
+        }
+        for (int i = 0; i < offGridXs.length; i++){
+            int x = offGridXs[i];
+            int y = offGridYs[i];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY){
+                double value = offGridValues[i];
+                totals[0]++;
+                totals[1] += value;
+                totals[2] += value * value;
+            }
+        }
+        return new Totals((int) totals[0], totals[1], totals[2]);
+    }
+
+    /**
+     * Adds the totals of a run of whole blocks from the tables
+     */
+    private void addBlocks(double[] totals, int firstColumn, int lastColumn, int firstRow, int lastRow)
+    {
+        int stride = blocks(width) + 1;
+        int northEast = (lastRow + 1) * stride + lastColumn + 1;
+        int northWest = (lastRow + 1) * stride + firstColumn;
+        int southEast = firstRow * stride + lastColumn + 1;
+        int southWest = firstRow * stride + firstColumn;
+        totals[0] += counts[northEast] - counts[northWest] - counts[southEast] + counts[southWest];
+        totals[1] += sums[northEast] - sums[northWest] - sums[southEast] + sums[southWest];
+        totals[2] += squares[northEast] - squares[northWest] - squares[southEast] + squares[southWest];
+    }
+
+    /**
+     * Adds the values of the cells in part of a row, read through the grid index
+     */
+    private void addCells(double[] totals, int row, int firstColumn, int lastColumn)
+    {
+        for (int cell = row * width + firstColumn; cell <= row * width + lastColumn; cell++){
+            int point = index.indexOfCell(cell);
+            if (point != GridIndex.MISSING){
+                double value = dataSet.getValue(point);
+                if (value >= 0){
+                    totals[0]++;
+                    totals[1] += value;
+                    totals[2] += value * value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated bytes used by the tables
+     * @return long bytes
+     */
+    public long estimateBytes()
+    {
+        return (long) counts.length * (Integer.BYTES + 2 * Double.BYTES)
+            + (long) offGridXs.length * (2 * Integer.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Returns the number of blocks needed to cover a number of cells
+     */
+    private static int blocks(int cells)
+    {
+        return (cells + BLOCK - 1) / BLOCK;
+    }
+
+    /**
+     * Divides and rounds up towards positive infinity
+     */
+    private static long ceilDiv(long dividend, long divisor)
+    {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+}
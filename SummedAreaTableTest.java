@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+
+/**
+ * The test class SummedAreaTableTest checks the totals read from the summed-area tables
+ * against adding up every point of the dataset.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class SummedAreaTableTest
+{
+    /**
+     * Default constructor for test class SummedAreaTableTest
+     */
+    public SummedAreaTableTest()
+    {
+    }
+
+    /**
+     * Test method for random rectangles, small and large, over a grid whose width and height
+     * are not whole blocks, with missing values, points off the grid and points sharing a cell.
+     */
+    @Test
+    public void testRandomRectanglesMatchScan()
+    {
+        Random random = new Random(11);
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        int gridCode = 0;
+        for (int row = 0; row < 45; row++){
+            for (int column = 0; column < 37; column++){
+                if (random.nextInt(5) > 0){
+                    dataSet.addData(gridCode++, 2500 + column * 1000, 7500 + row * 1000, value(random));
+                }
+            }
+        }
+        for (int i = 0; i < 30; i++){
+            // off the grid
+            dataSet.addData(gridCode++, 2500 + random.nextInt(37000), 7500 + random.nextInt(45000), value(random));
+            // in the same cell as another point
+            dataSet.addData(gridCode++, 2500 + random.nextInt(37) * 1000, 7500 + random.nextInt(45) * 1000, value(random));
+        }
+        SummedAreaTable table = dataSet.getSummedAreaTable();
+        assertNotNull(table);
+
+        for (int i = 0; i < 2000; i++){
+            int size = i % 2 == 0 ? 4000 : 50000;
+            int minX = random.nextInt(45000) - 2000;
+            int minY = random.nextInt(55000) - 2000;
+            int maxX = minX + random.nextInt(size);
+            int maxY = minY + random.nextInt(size);
+            assertTotals(scan(dataSet, minX, maxX, minY, maxY), table.query(minX, maxX, minY, maxY));
+        }
+        assertTotals(scan(dataSet, 0, 100000, 0, 100000), table.query(0, 100000, 0, 100000));
+        assertEquals(0, table.query(1, 0, 1, 0).count());
+    }
+
+    /**
+     * Test method for the tables of a quantized dataset, which read the decoded values.
+     */
+    @Test
+    public void testQuantizedDataSet()
+    {
+        Random random = new Random(5);
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        for (int i = 0; i < 900; i++){
+            dataSet.addData(i, 500 + (i % 30) * 1000, 500 + (i / 30) * 1000, value(random));
+        }
+        dataSet.quantize();
+        SummedAreaTable table = dataSet.getSummedAreaTable();
+        assertTotals(scan(dataSet, 3000, 21000, 1000, 25000), table.query(3000, 21000, 1000, 25000));
+    }
+
+    /**
+     * Test method for the tables taking far less memory than the values.
+     */
+    @Test
+    public void testTablesAreSmallerThanValues()
+    {
+        DataSet dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        for (int i = 0; i < 100000; i++){
+            dataSet.addData(i, 500 + (i % 250) * 1000, 500 + (i / 250) * 1000, i % 50);
+        }
+        long values = (long) dataSet.size() * Double.BYTES;
+        assertTrue(dataSet.getSummedAreaTable().estimateBytes() < values / 10);
+    }
+
+    /**
+     * Returns a random value, missing now and then
+     */
+    private static double value(Random random)
+    {
+        int kind = random.nextInt(10);
+        if (kind == 0){
+            return -1.0;
+        }
+        if (kind == 1){
+            return Double.NaN;
+        }
+        return random.nextDouble() * 60;
+    }
+
+    /**
+     * Adds up the values of every point inside a rectangle
+     */
+    private static SummedAreaTable.Totals scan(DataSet dataSet, int minX, int maxX, int minY, int maxY)
+    {
+        int count = 0;
+        double sum = 0;
+        double squares = 0;
+        for (int i = 0; i < dataSet.size(); i++){
+            int x = dataSet.getX(i);
+            int y = dataSet.getY(i);
+            double value = dataSet.getValue(i);
+            if (value >= 0 && x >= minX && x <= maxX && y >= minY && y <= maxY){
+                count++;
+                sum += value;
+                squares += value * value;
+            }
+        }
+        return new SummedAreaTable.Totals(count, sum, squares);
+    }
+
+    /**
+     * Checks two totals agree
+     */
+    private static void assertTotals(SummedAreaTable.Totals expected, SummedAreaTable.Totals actual)
+    {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.sum(), actual.sum(), 1e-6);
+        assertEquals(expected.sumOfSquares(), actual.sumOfSquares(), 1e-4);
+    }
+}
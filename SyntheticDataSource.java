@@ -0,0 +1,97 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A dataset made up by the program over an existing grid, for trying out and measuring
+ * the rest of the program without the DEFRA files for a year or pollutant.
+ *
+ * Values rise towards a few hot spots, as they do around cities, with some noise added,
+ * and a small share of them are missing (-1.0) like in the real files. The same seed always
+ * gives the same values.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class SyntheticDataSource implements DataSource
+{
+    // share of grid cells without a value
+    private static final double MISSING_SHARE = 0.02;
+    private static final int HOT_SPOTS = 5;
+    // distance in metres over which a hot spot fades
+    private static final double HOT_SPOT_RADIUS = 40000;
+
+    private final String pollutant;
+    private final String year;
+    private final GridGeometry geometry;
+    private final double background;
+    private final long seed;
+
+    /**
+     * Constructor for objects of class SyntheticDataSource
+     * @param String pollutant the pollutant, as it would appear in a file header
+     * @param String year the year
+     * @param GridGeometry geometry the grid cells to make values for
+     * @param double background the value far away from any hot spot
+     * @param long seed the seed of the random values
+     */
+    public SyntheticDataSource(String pollutant, String year, GridGeometry geometry, double background, long seed)
+    {
+        this.pollutant = pollutant;
+        this.year = year;
+        this.geometry = geometry;
+        this.background = background;
+        this.seed = seed;
+    }
+
+    /**
+     * Starts making the values
+     * @param Executor executor runs the load
+     * @return CompletableFuture<DataSet> completes with the dataset
+     */
+    public CompletableFuture<DataSet> load(Executor executor)
+    {
+        return CompletableFuture.supplyAsync(this::generate, executor);
+    }
+
+    /**
+     * Returns a description of the made up data
+     */
+    public String getName()
+    {
+        return "synthetic " + pollutant + " " + year;
+    }
+
+    /**
+     * Makes a value for every grid cell of the geometry
+     * @return DataSet the dataset
+     */
+    private DataSet generate()
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int size = geometry.size();
+        double[][] spots = new double[HOT_SPOTS][];
+        for (int i = 0; i < HOT_SPOTS; i++){
+            // a hot spot sits on a random grid cell and is up to four times the background
+            int cell = size == 0 ? 0 : random.nextInt(size);
+            double x = size == 0 ? 0 : geometry.getX(cell);
+            double y = size == 0 ? 0 : geometry.getY(cell);
+            spots[i] = new double[]{x, y, background * random.nextDouble(1, 4)};
+        }
+
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++){
+            if (random.nextDouble() < MISSING_SHARE){
+                values[i] = -1.0;
+                continue;
+            }
+            double value = background;
+            for (double[] spot : spots){
+                double distance = Math.hypot(geometry.getX(i) - spot[0], geometry.getY(i) - spot[1]);
+                value += spot[2] * Math.exp(-distance / HOT_SPOT_RADIUS);
+            }
+            values[i] = value * random.nextDouble(0.9, 1.1);
+        }
+        return new DataSet(pollutant, year, "Annual mean", "ugm-3", geometry, values);
+    }
+}
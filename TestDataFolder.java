@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A small data folder for tests that need a repository, so they do not depend on the DEFRA
+ * files, which are not kept with the code. The folder is written next to the compiled classes,
+ * where DataLoader looks for data, and holds a file for each of TYPES and YEARS over the same
+ * grid of SIZE by SIZE cells of 1 km, with cell i centred on 500 + (i % SIZE) * 1000,
+ * 500 + (i / SIZE) * 1000.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class TestDataFolder
+{
+    public static final List<String> TYPES = List.of("NO2", "PM10", "PM2.5");
+    public static final List<String> YEARS = List.of("2022", "2023");
+    public static final int SIZE = 20;
+
+    private final String name;
+    private final Path root;
+
+    /**
+     * Constructor for objects of class TestDataFolder
+     */
+    private TestDataFolder(String name, Path root)
+    {
+        this.name = name;
+        this.root = root;
+    }
+
+    /**
+     * Writes a data folder with a file for every type and year, each with its own values
+     * @param String prefix the start of the name of the folder
+     * @return TestDataFolder the folder
+     */
+    public static TestDataFolder create(String prefix) throws IOException, URISyntaxException
+    {
+        Path classes = Path.of(TestDataFolder.class.getResource("TestDataFolder.class").toURI()).getParent();
+        String name = prefix + System.nanoTime();
+        TestDataFolder folder = new TestDataFolder(name, Files.createDirectory(classes.resolve(name)));
+        long seed = 1;
+        for (String type : TYPES){
+            for (String year : YEARS){
+                folder.write(type, year, seed++);
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * Writes, or rewrites, the file of a type and year with random values, every thirteenth
+     * cell missing
+     * @param String type the pollutant as written in the file, e.g. "PM2.5"
+     * @param String year the year
+     * @param long seed the seed of the values
+     * @return Path the file
+     */
+    public Path write(String type, String year, long seed) throws IOException
+    {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (String line : new String[]{type, year, "annual mean", "ug m-3", ""}){
+            text.append(line).append(",,,\n");
+        }
+        text.append("gridcode,x,y,value\n");
+        for (int i = 0; i < SIZE * SIZE; i++){
+            text.append(100000 + i).append(',').append(500 + (i % SIZE) * 1000).append(',')
+                .append(500 + (i / SIZE) * 1000).append(',')
+                .append(i % 13 == 0 ? "MISSING" : String.valueOf(Math.round(random.nextDouble() * 40000) / 1000.0))
+                .append('\n');
+        }
+        Path file = root.resolve(type.toLowerCase() + "_" + year + ".csv");
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /**
+     * Returns a repository of the files in the folder, which never evicts a dataset
+     * @return DataRepository the repository
+     */
+    public DataRepository repository()
+    {
+        return new DataRepository(DataSetCache.unbounded(), name);
+    }
+
+    /**
+     * Returns the folder
+     */
+    public Path getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Deletes the folder and everything in it
+     */
+    public void delete() throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -19,9 +19,9 @@ public class UKLocationGenerator {
     private static RegionManager regionManager = new RegionManager(); 
 
     /**
-     * Generates a list of UK locations by extracting gridcode, easting, and northing
-     * from the DataLoader, then converting to latitude/longitude. Only includes gridcodes 
-     * within the specified region.
+     * Generates a list of UK locations by streaming gridcode, easting, and northing
+     * from the DataLoader without loading the whole file, then converting to
+     * latitude/longitude. Only includes gridcodes within the specified region.
      *
      * @param regionName The name of the region to filter by (e.g., "London")
      * @return List of locations, where each location is represented as an array of {gridcode, easting, 
@@ -45,36 +45,27 @@ public class UKLocationGenerator {
         double bottom = region.getRegionBottom();
         double top = region.getRegionTop();
 
-        // Use DataLoader to read data from the CSV file
+        // Stream the rows of the CSV file through DataLoader, keeping only those in the region
         DataLoader loader = new DataLoader();
-        DataSet dataSet = loader.loadDataFile(fileName);
-        if (dataSet == null) {
-            // Handle case where the data could not be loaded
-            System.out.println("Failed to load data from " + fileName);
-            return locations;
-        }
-
-        // Process each data point in the loaded dataset
-        for (DataPoint data : dataSet.getData()) {
-            try {
-                // Extract gridcode, easting, and northing from the data point
-                int gridcode = data.gridCode();  
-                int easting = data.x();          
-                int northing = data.y();         
-
-                // Check if the data point is within the specified region boundaries
-                if (isWithinRegion(easting, northing, left, right, bottom, top)) {
+        DataHeader header = loader.streamDataFile(fileName, (gridcode, easting, northing, value) -> {
+            // Check if the data point is within the specified region boundaries
+            if (isWithinRegion(easting, northing, left, right, bottom, top)) {
+                try {
                     // Convert the easting and northing coordinates to latitude and longitude
                     double[] latLon = CoordinateConverter.convertToLatLon(easting, northing);
 
                     // Add the location to the list with all relevant data
                     locations.add(new double[]{gridcode, easting, northing, latLon[0], latLon[1]});
+                } catch (Exception e) {
+                    // Skip invalid data rows and print an error message
+                    System.out.println("Skipping invalid data row: " + new DataPoint(gridcode, easting, northing, value));
+                    e.printStackTrace();  
                 }
-            } catch (Exception e) {
-                // Skip invalid data rows and print an error message
-                System.out.println("Skipping invalid data row: " + data);
-                e.printStackTrace();  
             }
+        });
+        if (header == null) {
+            // Handle case where the data could not be loaded
+            System.out.println("Failed to load data from " + fileName);
         }
 
         // Return the generated list of locations
@@ -1,3 +1,4 @@
+import javafx.application.Platform;
 import javafx.stage.*;
 import javafx.scene.*;
 import javafx.scene.layout.*;
@@ -8,6 +9,7 @@ import javafx.scene.control.Label.*;
  * The `WelcomeWindow` class creates a modal window that displays a series of instructions to the user upon starting the London Air Pollution Visualizer application.
  * The instructions guide the user through the features of the tool and explain how to interact with the map and data.
  * The window includes navigation buttons to move through the pages of instructions and a progress bar to indicate the user's position.
+ * While the pollution data is loading in the background, a second progress bar shows how many datasets have been loaded.
  * 
  * The window is displayed on top of the main application window, blocking interaction with the main window until the user finishes the tutorial.
  * 
@@ -22,6 +24,9 @@ public class WelcomeWindow extends Stage {
     private Button finishButton; // Button to finish the tutorial and close the window
     private Label progressLabel; // Label displaying the current page out of total pages
     private ProgressBar progressBar; // Progress bar showing the user's progress
+    private Label loadingLabel; // Label displaying how many datasets have been loaded
+    private ProgressBar loadingBar; // Progress bar showing how much of the data has been loaded
+    private VBox loadingBox; // Holds the loading indicator, hidden unless data is loading
 
     // Array of instruction texts to be displayed in the tutorial
     private final String[] instructions = {
@@ -66,6 +71,14 @@ public class WelcomeWindow extends Stage {
         VBox progressBox = new VBox(10, progressLabel, progressBar);
         progressBox.setAlignment(javafx.geometry.Pos.CENTER_RIGHT);
 
+        // Initialize the loading indicator, shown once data loading reports progress
+        loadingLabel = new Label();
+        loadingBar = new ProgressBar(0);
+        loadingBar.setPrefWidth(70);
+        loadingBox = new VBox(10, loadingLabel, loadingBar);
+        loadingBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+        loadingBox.setVisible(false);
+
         // Button actions
         nextButton.setOnAction(e -> showNextPage());
         finishButton.setOnAction(e -> close()); // Close the window on finish
@@ -79,6 +92,7 @@ public class WelcomeWindow extends Stage {
         BorderPane bottomPane = new BorderPane();
         bottomPane.setCenter(buttonBox); // Place buttons in the center
         bottomPane.setRight(progressBox); // Place progress indicator to the right
+        bottomPane.setLeft(loadingBox); // Place loading indicator to the left
         bottomPane.setPadding(new javafx.geometry.Insets(10));
 
         // Main layout for the window (instruction label in the center, buttons at the bottom)
@@ -109,6 +123,20 @@ public class WelcomeWindow extends Stage {
         }
     }
 
+    /**
+     * Shows how many datasets have been loaded. Can be called from any thread; the
+     * indicator is updated on the JavaFX thread.
+     * @param loaded The number of datasets loaded so far
+     * @param total The number of datasets being loaded
+     */
+    public void showLoadingProgress(int loaded, int total) {
+        Platform.runLater(() -> {
+            loadingBox.setVisible(true);
+            loadingLabel.setText(loaded < total ? "Loading data " + loaded + " of " + total : "Data loaded");
+            loadingBar.setProgress(total == 0 ? 1 : (double) loaded / total);
+        });
+    }
+
     /**
      * Returns the progress text for the progress indicator.
      * @return A string representing the current page out of the total number of pages.
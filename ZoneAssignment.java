@@ -0,0 +1,68 @@
+/**
+ * The zone of every data point of a geometry within one region, as a small integer id
+ * (see Statistics.ZONES), worked out once so that aggregating a dataset over all zones is
+ * a single pass reading one byte per point.
+ *
+ * Assignments are built by GridGeometry.getZoneAssignment and kept there for the last few
+ * regions, so every dataset sharing the geometry uses the same assignment.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class ZoneAssignment
+{
+    private final byte[] zones;
+
+    /**
+     * Constructor for objects of class ZoneAssignment
+     */
+    private ZoneAssignment(byte[] zones)
+    {
+        this.zones = zones;
+    }
+
+    /**
+     * Works out the zone of every point of a geometry
+     * @param GridGeometry geometry the points
+     * @param Statistics stats the statistics of the region the zones divide
+     * @return ZoneAssignment the assignment
+     */
+    public static ZoneAssignment build(GridGeometry geometry, Statistics stats)
+    {
+        int size = geometry.size();
+        int[] xs = geometry.getXColumn();
+        int[] ys = geometry.getYColumn();
+        byte[] zones = new byte[size];
+        for (int i = 0; i < size; i++){
+            zones[i] = (byte) stats.determineZoneId(xs[i], ys[i]);
+        }
+        return new ZoneAssignment(zones);
+    }
+
+    /**
+     * Returns the zone id of a point
+     * @param int index the index of the point
+     * @return int the zone id, or Statistics.OUTSIDE if the point is outside the region
+     */
+    public int getZone(int index)
+    {
+        return zones[index];
+    }
+
+    /**
+     * Returns the number of points
+     */
+    public int size()
+    {
+        return zones.length;
+    }
+
+    /**
+     * Returns the estimated bytes used by this assignment
+     * @return long bytes
+     */
+    public long estimateBytes()
+    {
+        return zones.length;
+    }
+}
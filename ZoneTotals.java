@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * The count, sum, sum of squares, lowest and highest value of a dataset in each of the nine
+ * zones of a region and in the region as a whole, filled in one pass over the dataset.
+ * Missing values are left out.
+ *
+ * Zones are looked up by their id (see Statistics.ZONES), with Statistics.ALL_ZONES for
+ * the whole region.
+ *
+ * @author Ali Demir
+ * @version 24/03/25
+ */
+public class ZoneTotals
+{
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] squares;
+    private final double[] lowest;
+    // the point with the highest value in each zone, null if there is none
+    private final DataPoint[] highest;
+
+    /**
+     * Constructor for objects of class ZoneTotals
+     */
+    private ZoneTotals(int[] counts, double[] sums, double[] squares, double[] lowest, DataPoint[] highest)
+    {
+        this.counts = counts;
+        this.sums = sums;
+        this.squares = squares;
+        this.lowest = lowest;
+        this.highest = highest;
+    }
+
+    /**
+     * Adds up the values of a dataset by zone
+     * @param DataSet dataSet the dataset
+     * @param ZoneAssignment assignment the zone of each point of the dataset's geometry
+     * @return ZoneTotals the totals
+     */
+    public static ZoneTotals aggregate(DataSet dataSet, ZoneAssignment assignment)
+    {
+        int zoneCount = Statistics.ZONES.size();
+        int[] counts = new int[zoneCount + 1];
+        double[] sums = new double[zoneCount + 1];
+        double[] squares = new double[zoneCount + 1];
+        double[] lowest = new double[zoneCount + 1];
+        double[] highestValues = new double[zoneCount + 1];
+        int[] highest = new int[zoneCount + 1];
+        Arrays.fill(lowest, Double.POSITIVE_INFINITY);
+        Arrays.fill(highest, -1);
+
+        // quantized and off-heap values have no column and are read one by one
+        double[] column = dataSet.getValueColumn();
+        int size = dataSet.size();
+        for (int i = 0; i < size; i++){
+            int zone = assignment.getZone(i);
+            if (zone == Statistics.OUTSIDE){
+                continue;
+            }
+            double value = column != null ? column[i] : dataSet.getValue(i);
+            if (value < 0){
+                continue;
+            }
+            counts[zone]++;
+            sums[zone] += value;
+            squares[zone] += value * value;
+            lowest[zone] = Math.min(lowest[zone], value);
+            if (highest[zone] == -1 || value > highestValues[zone]){
+                highest[zone] = i;
+                highestValues[zone] = value;
+            }
+        }
+
+        // the region is made up of the nine zones
+        int all = Statistics.ALL_ZONES;
+        for (int zone = 0; zone < zoneCount; zone++){
+            counts[all] += counts[zone];
+            sums[all] += sums[zone];
+            squares[all] += squares[zone];
+            lowest[all] = Math.min(lowest[all], lowest[zone]);
+            if (highest[zone] != -1 && (highest[all] == -1 || highestValues[zone] > highestValues[all]
+                    || (highestValues[zone] == highestValues[all] && highest[zone] < highest[all]))){
+                highest[all] = highest[zone];
+                highestValues[all] = highestValues[zone];
+            }
+        }
+        // only the highest points are kept, not the dataset, which may then be unloaded
+        DataPoint[] highestPoints = new DataPoint[zoneCount + 1];
+        for (int zone = 0; zone <= zoneCount; zone++){
+            if (highest[zone] != -1){
+                highestPoints[zone] = dataSet.getDataPoint(highest[zone]);
+            }
+        }
+        return new ZoneTotals(counts, sums, squares, lowest, highestPoints);
+    }
+
+    /**
+     * Returns the number of values in a zone
+     * @param int zone the zone id
+     * @return int the number of values
+     */
+    public int getCount(int zone)
+    {
+        return counts[zone];
+    }
+
+    /**
+     * Returns the sum of the values in a zone
+     * @param int zone the zone id
+     * @return double the sum, 0 if there are no values
+     */
+    public double getSum(int zone)
+    {
+        return sums[zone];
+    }
+
+    /**
+     * Returns the sum of the squares of the values in a zone
+     * @param int zone the zone id
+     * @return double the sum of squares, 0 if there are no values
+     */
+    public double getSumOfSquares(int zone)
+    {
+        return squares[zone];
+    }
+
+    /**
+     * Returns the average of the values in a zone
+     * @param int zone the zone id
+     * @return double the average, or 0 if there are no values
+     */
+    public double getAverage(int zone)
+    {
+        return counts[zone] == 0 ? 0 : sums[zone] / counts[zone];
+    }
+
+    /**
+     * Returns the lowest value in a zone
+     * @param int zone the zone id
+     * @return double the lowest value, or 0 if there are no values
+     */
+    public double getLowest(int zone)
+    {
+        return counts[zone] == 0 ? 0 : lowest[zone];
+    }
+
+    /**
+     * Returns the data point with the highest value in a zone. Of equal values the first is
+     * returned, as a scan through the dataset would.
+     * @param int zone the zone id
+     * @return DataPoint the data point, or null if there are no values
+     */
+    public DataPoint getHighest(int zone)
+    {
+        return highest[zone];
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import javafx.scene.image.WritableImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The test class ZoneTotalsTest checks that the totals of all zones, filled in one pass,
+ * agree with Statistics working out each zone on its own.
+ *
+ * @author  Ali Demir
+ * @version 24/03/25
+ */
+public class ZoneTotalsTest
+{
+    private Statistics stats;
+    private DataSet dataSet;
+
+    /**
+     * Default constructor for test class ZoneTotalsTest
+     */
+    public ZoneTotalsTest()
+    {
+    }
+
+    /**
+     * Sets up a region from 0 to 3000 with zone lines at 1000 and 2000, and a dataset with
+     * points inside, on the zone lines, on the edges and outside the region, some missing.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        stats = new Statistics(new Region("TestRegion", new WritableImage(1, 1), 3000, 0, 0, 3000));
+        dataSet = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        Random random = new Random(7);
+        int[] lines = {0, 1000, 1001, 1999, 2000, 2001, 3000};
+        int gridCode = 0;
+        for (int x : lines){
+            for (int y : lines){
+                dataSet.addData(gridCode, x, y, gridCode % 7 == 0 ? -1.0 : gridCode + random.nextDouble());
+                gridCode++;
+            }
+        }
+        for (int i = 0; i < 2000; i++){
+            int x = -200 + random.nextInt(3400);
+            int y = -200 + random.nextInt(3400);
+            dataSet.addData(gridCode, x, y, gridCode % 7 == 0 ? -1.0 : gridCode + random.nextDouble());
+            gridCode++;
+        }
+    }
+
+    /**
+     * Test method for the totals of every zone and the whole region against Statistics.
+     */
+    @Test
+    public void testTotalsMatchStatistics()
+    {
+        assertTotalsMatchStatistics(stats.aggregateZones(dataSet));
+    }
+
+    /**
+     * Test method for the totals of a quantized dataset, whose values are read one by one.
+     */
+    @Test
+    public void testQuantizedTotalsMatchStatistics()
+    {
+        dataSet.quantize();
+        assertTotalsMatchStatistics(stats.aggregateZones(dataSet));
+    }
+
+    /**
+     * Test method for zones with no values, whose totals are empty.
+     */
+    @Test
+    public void testEmptyZones()
+    {
+        DataSet empty = new DataSet("NO2", "2023", "annual mean", "ug m-3");
+        empty.addData(1, 500, 500, -1.0);     //Southwest, missing
+        empty.addData(2, 5000, 500, 10.0);    //outside
+        ZoneTotals totals = stats.aggregateZones(empty);
+        for (int zone = 0; zone <= Statistics.ALL_ZONES; zone++){
+            assertEquals(0, totals.getCount(zone));
+            assertEquals(0.0, totals.getAverage(zone));
+            assertNull(totals.getHighest(zone));
+        }
+    }
+
+    /**
+     * Checks the totals of every zone and the whole region against Statistics
+     */
+    private void assertTotalsMatchStatistics(ZoneTotals totals)
+    {
+        List<String> zones = new ArrayList<>(Statistics.ZONES);
+        zones.add("All Zones");
+        int counted = 0;
+        for (String zone : zones){
+            int id = Statistics.zoneId(zone);
+            StatisticsQuery.Result result = stats.query(dataSet).zone(zone).aggregate(
+                StatisticsQuery.Aggregate.COUNT, StatisticsQuery.Aggregate.SUM, StatisticsQuery.Aggregate.MIN);
+            assertEquals(result.count(), totals.getCount(id), zone);
+            assertEquals(result.get(StatisticsQuery.Aggregate.SUM), totals.getSum(id), 1e-6, zone);
+            assertEquals(result.get(StatisticsQuery.Aggregate.MIN), totals.getLowest(id), 1e-9, zone);
+            assertEquals(stats.calculateAvgPollution(dataSet, zone), totals.getAverage(id), 1e-9, zone);
+            assertEquals(stats.getHighestPollution(dataSet, zone), totals.getHighest(id), zone);
+            if (id != Statistics.ALL_ZONES){
+                counted += totals.getCount(id);
+            }
+        }
+        //every point is in exactly one zone
+        assertEquals(totals.getCount(Statistics.ALL_ZONES), counted);
+        assertTrue(counted > 0);
+    }
+}